@@ -39,22 +39,39 @@
 package de.psdev.slf4j.android.logger;
 
 import android.util.Log;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
 import org.slf4j.Marker;
-import org.slf4j.helpers.FormattingTuple;
-import org.slf4j.helpers.MarkerIgnoringBase;
-import org.slf4j.helpers.MessageFormatter;
+import org.slf4j.spi.MDCAdapter;
 
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.Locale;
+import java.io.ObjectStreamException;
+import java.io.OutputStreamWriter;
+import java.io.Serializable;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
-import java.util.regex.Pattern;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 /**
  * <p>A simple implementation that delegates all log requests to the Google Android
- * logging facilities. Note that this logger does not support {@link Marker}.
- * Methods taking marker data as parameter simply invoke the eponymous method
- * without the Marker argument, discarding any marker data in the process.</p>
+ * logging facilities. Markers are passed on with the message, they can let messages
+ * pass regardless of the log level, suppress them or route them to dedicated sinks,
+ * see {@link #MARKER_ALLOW_KEY}, {@link #MARKER_DENY_KEY} and {@link AndroidMarker}.</p>
  * <p/>
  * <p>The logging levels specified for SLF4J can be almost directly mapped to
  * the levels that exist in the Google Android platform. The following table
@@ -89,7 +106,7 @@ import java.util.regex.Pattern;
  * @author Andrey Korzhevskiy <a.korzhevskiy@gmail.com>
  * @author Philip Schiffer <philip.schiffer@gmail.com
  */
-public class AndroidLoggerAdapter extends MarkerIgnoringBase {
+public class AndroidLoggerAdapter implements Logger, Serializable {
     private static final long serialVersionUID = -1227274521521287937L;
 
     private static final String NO_MESSAGE = "";
@@ -97,18 +114,189 @@ public class AndroidLoggerAdapter extends MarkerIgnoringBase {
 
     // Properties
     private static final String CONFIGURATION_FILE = "logger.properties";
-    private static final Properties ANDROID_LOGGER_PROPERTIES = new Properties();
+    private static final Properties CLASSPATH_PROPERTIES = new Properties();
+    /**
+     * Properties of the configuration file, falling back to those of {@link #CONFIGURATION_FILE} in the classpath
+     */
+    private static final Properties ANDROID_LOGGER_PROPERTIES = new Properties(CLASSPATH_PROPERTIES);
 
-    // Current log level and tag
-    private static LogLevel sLogLevel = LogLevel.INFO;
-    private static String sLogTag = "Slf4jAndroidLogger";
+    private static final LogLevel DEFAULT_LOG_LEVEL = LogLevel.INFO;
+    private static final String DEFAULT_LOG_TAG = "Slf4jAndroidLogger";
+
+    /**
+     * Current configuration, replaced as a whole on every change
+     */
+    private static volatile LoggerConfiguration sConfiguration;
+    private static boolean sHonorIsLoggable;
+    private static ScheduledExecutorService sScheduler;
+    /**
+     * All loggers, to resolve their level again when the configuration changes
+     */
+    private static final List<AndroidLoggerAdapter> ADAPTERS = new ArrayList<AndroidLoggerAdapter>();
 
     /**
      * All system properties used by {@code AndroidLogger} start with this prefix
      */
     public static final String SYSTEM_PREFIX = "de.psdev.slf4j.android.logger.";
     public static final String DEFAULT_LOG_LEVEL_KEY = SYSTEM_PREFIX + "defaultLogLevel";
+    /**
+     * Prefix of the log levels of parts of the logger hierarchy, e.g. {@code level.com.acme.net=WARN}. Loggers
+     * without a configured prefix use the default log level.
+     */
+    public static final String LEVEL_KEY_PREFIX = SYSTEM_PREFIX + "level.";
     public static final String LOG_TAG_KEY = SYSTEM_PREFIX + "logTag";
+    /**
+     * Path of a properties file overriding {@code logger.properties}. Log levels, log tag and caller capture
+     * levels are applied again whenever the file changes.
+     */
+    public static final String CONFIG_FILE_KEY = SYSTEM_PREFIX + "configFile";
+    /**
+     * Interval in milliseconds in which the configuration file is checked for changes, 0 reads it only once
+     */
+    public static final String CONFIG_POLL_INTERVAL_KEY = SYSTEM_PREFIX + "configPollInterval";
+    /**
+     * {@code true} to also require {@code Log.isLoggable} for the log tag, so {@code setprop log.tag.<tag>}
+     * limits the level of all loggers
+     */
+    public static final String HONOR_IS_LOGGABLE_KEY = SYSTEM_PREFIX + "honorIsLoggable";
+    /**
+     * Interval in milliseconds in which {@code Log.isLoggable} is asked again, 0 only on
+     * {@link #refreshIsLoggable()}
+     */
+    public static final String IS_LOGGABLE_REFRESH_INTERVAL_KEY = SYSTEM_PREFIX + "isLoggableRefreshInterval";
+    public static final String CALLER_RESOLVER_KEY = SYSTEM_PREFIX + "callerResolver";
+    public static final String CALLER_MAX_DEPTH_KEY = SYSTEM_PREFIX + "callerMaxDepth";
+    /**
+     * Minimum level for which the caller is determined. Append a logger name prefix to the key to configure
+     * it for a part of the logger hierarchy, e.g. {@code callerCaptureLevel.com.acme.sync=TRACE}.
+     */
+    public static final String CALLER_CAPTURE_LEVEL_KEY = SYSTEM_PREFIX + "callerCaptureLevel";
+    /**
+     * Pattern of the log line, see {@link PatternLayout} for the supported tokens
+     */
+    public static final String LAYOUT_KEY = SYSTEM_PREFIX + "layout";
+    /**
+     * Pattern of the log line for messages the caller is not determined for. Only used if the pattern of
+     * {@link #LAYOUT_KEY} contains caller tokens.
+     */
+    public static final String LAYOUT_WITHOUT_CALLER_KEY = SYSTEM_PREFIX + "layoutWithoutCaller";
+    /**
+     * {@code sync} to write to logcat on the logging thread, {@code async} to write on a background thread
+     */
+    public static final String DISPATCH_MODE_KEY = SYSTEM_PREFIX + "dispatchMode";
+    public static final String ASYNC_QUEUE_SIZE_KEY = SYSTEM_PREFIX + "async.queueSize";
+    /**
+     * What to do when the async queue is full: {@code BLOCK}, {@code DROP_NEWEST}, {@code DROP_OLDEST},
+     * {@code DROP_BELOW} or {@code SYNC}
+     */
+    public static final String ASYNC_OVERFLOW_POLICY_KEY = SYSTEM_PREFIX + "async.overflowPolicy";
+    /**
+     * Level below which {@code DROP_BELOW} drops events
+     */
+    public static final String ASYNC_OVERFLOW_LEVEL_KEY = SYSTEM_PREFIX + "async.overflowLevel";
+    /**
+     * Minimum time in milliseconds between two reports of dropped events
+     */
+    public static final String ASYNC_DROP_REPORT_INTERVAL_KEY = SYSTEM_PREFIX + "async.dropReportInterval";
+    /**
+     * Level from which on events skip the async queue and are written on the logging thread, or {@code OFF}
+     */
+    public static final String ASYNC_BYPASS_LEVEL_KEY = SYSTEM_PREFIX + "async.bypassLevel";
+    /**
+     * How arguments of queued events are protected against later changes: {@code none}, {@code immutable} or
+     * {@code message}
+     */
+    public static final String ASYNC_ARGUMENT_SNAPSHOT_KEY = SYSTEM_PREFIX + "async.argumentSnapshot";
+    /**
+     * Level from which on messages release the held messages, or {@code OFF} to hold no messages
+     */
+    public static final String TRIGGER_LEVEL_KEY = SYSTEM_PREFIX + "trigger.level";
+    /**
+     * Level below which messages are held until a message at the trigger level is logged
+     */
+    public static final String TRIGGER_HOLD_LEVEL_KEY = SYSTEM_PREFIX + "trigger.holdLevel";
+    /**
+     * Maximum number of held messages, the oldest are discarded
+     */
+    public static final String TRIGGER_BUFFER_SIZE_KEY = SYSTEM_PREFIX + "trigger.bufferSize";
+    /**
+     * Whether held messages are kept per {@code thread} or {@code global}
+     */
+    public static final String TRIGGER_SCOPE_KEY = SYSTEM_PREFIX + "trigger.scope";
+    /**
+     * Maximum size of a logcat record in UTF-8 bytes before a message is split, 0 disables splitting
+     */
+    public static final String MAX_MESSAGE_BYTES_KEY = SYSTEM_PREFIX + "maxMessageBytes";
+    /**
+     * Comma separated names of the sinks events are written to
+     */
+    public static final String SINKS_KEY = SYSTEM_PREFIX + "sinks";
+    /**
+     * Prefix of the properties of a sink, followed by its name, e.g. {@code sink.file.level}
+     */
+    public static final String SINK_KEY_PREFIX = SYSTEM_PREFIX + "sink.";
+    /**
+     * Prefix of the maximum number of messages per second of each logger, configured by logger name prefix and
+     * optionally level, e.g. {@code rateLimit.DEBUG.com.acme.net=100}
+     */
+    public static final String RATE_LIMIT_KEY_PREFIX = SYSTEM_PREFIX + "rateLimit.";
+    /**
+     * Prefix of the sample rate of each logger, only every n-th message is logged, configured like the rate limit
+     */
+    public static final String SAMPLE_RATE_KEY_PREFIX = SYSTEM_PREFIX + "sampleRate.";
+    /**
+     * Interval in milliseconds in which the number of messages dropped by rate limits and sampling is reported
+     */
+    public static final String THROTTLE_REPORT_INTERVAL_KEY = SYSTEM_PREFIX + "throttleReportInterval";
+    /**
+     * {@code true} to write consecutive identical messages of a logger once, followed by the number of repetitions
+     */
+    public static final String COLLAPSE_DUPLICATES_KEY = SYSTEM_PREFIX + "collapseDuplicates";
+    /**
+     * Time in milliseconds after the last repetition of a message the number of repetitions is written at the latest
+     */
+    public static final String COLLAPSE_TIMEOUT_KEY = SYSTEM_PREFIX + "collapseTimeout";
+    /**
+     * Comma separated names of markers whose messages are logged regardless of the log level
+     */
+    public static final String MARKER_ALLOW_KEY = SYSTEM_PREFIX + "marker.allow";
+    /**
+     * Comma separated names of markers whose messages are not logged, takes precedence over
+     * {@link #MARKER_ALLOW_KEY}
+     */
+    public static final String MARKER_DENY_KEY = SYSTEM_PREFIX + "marker.deny";
+    /**
+     * Size in bytes of the off-heap buffer recording the most recent messages, 0 disables the recorder
+     */
+    public static final String RECORDER_SIZE_KEY = SYSTEM_PREFIX + "recorder.size";
+    /**
+     * Level from which on messages are recorded, independent of the log level
+     */
+    public static final String RECORDER_LEVEL_KEY = SYSTEM_PREFIX + "recorder.level";
+
+    private static final String DISPATCH_MODE_ASYNC = "async";
+    private static final String SINK_TYPE_PROPERTY = "type";
+    private static final String SINK_LEVEL_PROPERTY = "level";
+    private static final String SINK_MARKERS_PROPERTY = "markers";
+    private static final String SINK_EXCLUDE_MARKERS_PROPERTY = "excludeMarkers";
+
+    private static final int DEFAULT_CALLER_MAX_DEPTH = 64;
+    private static final long DEFAULT_IS_LOGGABLE_REFRESH_INTERVAL = TimeUnit.SECONDS.toMillis(10);
+    private static final long DEFAULT_THROTTLE_REPORT_INTERVAL = TimeUnit.SECONDS.toMillis(10);
+
+    // Output
+    private static LogSink sLogSink;
+    private static AsyncLogDispatcher sAsyncDispatcher;
+    private static TriggerBuffer sTriggerBuffer;
+    private static EventRecorder sRecorder;
+
+    // Rate limits and sample rates by level ordinal, null if none are configured
+    private static LoggerLevelMap[] sRateLimits;
+    private static LoggerLevelMap[] sSampleRates;
+
+    // Ids of the allowed and denied markers, null if none are configured
+    private static long[] sAllowedMarkers;
+    private static long[] sDeniedMarkers;
 
     /**
      * Initialize properties read from properties file
@@ -123,7 +311,7 @@ public class AndroidLoggerAdapter extends MarkerIgnoringBase {
         }
         if (propertiesInputStream != null) {
             try {
-                ANDROID_LOGGER_PROPERTIES.load(propertiesInputStream);
+                CLASSPATH_PROPERTIES.load(propertiesInputStream);
                 propertiesInputStream.close();
             } catch (IOException ignored) {
                 // ignored
@@ -131,14 +319,243 @@ public class AndroidLoggerAdapter extends MarkerIgnoringBase {
         }
 
         // Init properties
-        final String defaultLogLevelString = getStringProperty(DEFAULT_LOG_LEVEL_KEY, null);
-        if (defaultLogLevelString != null) {
-            setLogLevel(stringToLevel(defaultLogLevelString));
+        final String configFile = getStringProperty(CONFIG_FILE_KEY);
+        if (configFile != null) {
+            readConfigFile(new File(configFile));
+        }
+        sConfiguration = readLevels(new LoggerConfiguration(DEFAULT_LOG_LEVEL, DEFAULT_LOG_TAG, null, null,
+            CallerResolvers.create(getStringProperty(CALLER_RESOLVER_KEY, CallerResolvers.AUTO)),
+            getIntProperty(CALLER_MAX_DEPTH_KEY, DEFAULT_CALLER_MAX_DEPTH),
+            PatternLayout.compile(getStringProperty(LAYOUT_KEY, PatternLayout.DEFAULT_PATTERN)),
+            PatternLayout.compile(
+                getStringProperty(LAYOUT_WITHOUT_CALLER_KEY, PatternLayout.DEFAULT_PATTERN_WITHOUT_CALLER)),
+            getIntProperty(MAX_MESSAGE_BYTES_KEY, LogcatSink.DEFAULT_MAX_MESSAGE_BYTES),
+            ArgumentSnapshot.fromString(getStringProperty(ASYNC_ARGUMENT_SNAPSHOT_KEY)), Log.VERBOSE));
+        sHonorIsLoggable = getBooleanProperty(HONOR_IS_LOGGABLE_KEY, false);
+        if (sHonorIsLoggable) {
+            sConfiguration = sConfiguration.withLoggableThreshold(getLoggableThreshold(sConfiguration.getLogTag()));
+        }
+        sLogSink = createLogSink();
+        if (getBooleanProperty(COLLAPSE_DUPLICATES_KEY, false)) {
+            final long collapseTimeout = getLongProperty(COLLAPSE_TIMEOUT_KEY, CollapsingLogSink.DEFAULT_TIMEOUT);
+            final CollapsingLogSink collapsingLogSink = new CollapsingLogSink(sLogSink, collapseTimeout);
+            getScheduler().scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    collapsingLogSink.flushExpired();
+                }
+            }, collapseTimeout, collapseTimeout, TimeUnit.MILLISECONDS);
+            sLogSink = collapsingLogSink;
+        }
+        sRateLimits = getLevelValues(RATE_LIMIT_KEY_PREFIX, 0);
+        sSampleRates = getLevelValues(SAMPLE_RATE_KEY_PREFIX, 1);
+        sAllowedMarkers = AndroidMarker.bitsOf(getStringProperty(MARKER_ALLOW_KEY));
+        sDeniedMarkers = AndroidMarker.bitsOf(getStringProperty(MARKER_DENY_KEY));
+        final int recorderSize = getIntProperty(RECORDER_SIZE_KEY, EventRecorder.DEFAULT_SIZE);
+        if (recorderSize > 0) {
+            sRecorder = new EventRecorder(recorderSize,
+                LoggerLevelMap.parseThreshold(getStringProperty(RECORDER_LEVEL_KEY, LogLevel.DEBUG.name())));
+        }
+        final String triggerLevel = getStringProperty(TRIGGER_LEVEL_KEY, LoggerLevelMap.OFF_VALUE);
+        final int triggerThreshold = LoggerLevelMap.parseThreshold(triggerLevel);
+        if (triggerThreshold != LoggerLevelMap.OFF) {
+            sTriggerBuffer = new TriggerBuffer(triggerThreshold,
+                LoggerLevelMap.parseThreshold(getStringProperty(TRIGGER_HOLD_LEVEL_KEY, triggerLevel)),
+                getIntProperty(TRIGGER_BUFFER_SIZE_KEY, TriggerBuffer.DEFAULT_SIZE),
+                TriggerBuffer.Scope.fromString(getStringProperty(TRIGGER_SCOPE_KEY)));
+        }
+        if (DISPATCH_MODE_ASYNC.equalsIgnoreCase(getStringProperty(DISPATCH_MODE_KEY, null))) {
+            sAsyncDispatcher = new AsyncLogDispatcher(
+                getIntProperty(ASYNC_QUEUE_SIZE_KEY, AsyncLogDispatcher.DEFAULT_QUEUE_SIZE),
+                AsyncLogDispatcher.OverflowPolicy.fromString(getStringProperty(ASYNC_OVERFLOW_POLICY_KEY)),
+                stringToLevel(getStringProperty(ASYNC_OVERFLOW_LEVEL_KEY, LogLevel.WARN.name())),
+                getLongProperty(ASYNC_DROP_REPORT_INTERVAL_KEY, AsyncLogDispatcher.DEFAULT_DROP_REPORT_INTERVAL),
+                LoggerLevelMap.parseThreshold(getStringProperty(ASYNC_BYPASS_LEVEL_KEY, LogLevel.ERROR.name())),
+                sLogSink);
+        } else {
+            Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    sLogSink.flush();
+                }
+            }, "Slf4jAndroidLogger-Shutdown"));
+        }
+        final long configPollInterval =
+            getLongProperty(CONFIG_POLL_INTERVAL_KEY, ConfigurationWatcher.DEFAULT_INTERVAL);
+        if (configFile != null && configPollInterval > 0) {
+            final File file = new File(configFile);
+            new ConfigurationWatcher(file, new Runnable() {
+                @Override
+                public void run() {
+                    reloadConfiguration(file);
+                }
+            }).start(getScheduler(), configPollInterval);
+        }
+        final long isLoggableRefreshInterval = getLongProperty(IS_LOGGABLE_REFRESH_INTERVAL_KEY,
+            DEFAULT_IS_LOGGABLE_REFRESH_INTERVAL);
+        final long throttleReportInterval = getLongProperty(THROTTLE_REPORT_INTERVAL_KEY,
+            DEFAULT_THROTTLE_REPORT_INTERVAL);
+        if ((sRateLimits != null || sSampleRates != null) && throttleReportInterval > 0) {
+            getScheduler().scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    reportSuppressed();
+                }
+            }, throttleReportInterval, throttleReportInterval, TimeUnit.MILLISECONDS);
+        }
+        if (sHonorIsLoggable && isLoggableRefreshInterval > 0) {
+            getScheduler().scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    refreshIsLoggable();
+                }
+            }, isLoggableRefreshInterval, isLoggableRefreshInterval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * @return the executor for the periodic background work, started on first use
+     */
+    private static ScheduledExecutorService getScheduler() {
+        if (sScheduler == null) {
+            sScheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(final Runnable runnable) {
+                    final Thread thread = new Thread(runnable, "Slf4jAndroidLogger-Config");
+                    thread.setDaemon(true);
+                    thread.setPriority(Thread.MIN_PRIORITY);
+                    return thread;
+                }
+            });
+        }
+        return sScheduler;
+    }
+
+    /**
+     * @return the lowest Android priority {@code Log.isLoggable} allows for the given tag, or
+     * {@link LoggerLevelMap#OFF}
+     */
+    private static int getLoggableThreshold(final String tag) {
+        try {
+            for (final LogLevel logLevel : LogLevel.values()) {
+                if (Log.isLoggable(tag, logLevel.getAndroidLogLevel())) {
+                    return logLevel.getAndroidLogLevel();
+                }
+            }
+            return LoggerLevelMap.OFF;
+        } catch (final IllegalArgumentException e) {
+            // tag longer than 23 characters, not limited by isLoggable then
+            return Log.VERBOSE;
+        }
+    }
+
+    /**
+     * Ask {@code Log.isLoggable} again for the log tag and apply the result to all loggers, e.g. after changing
+     * the level with {@code adb shell setprop log.tag.<tag> <level>}. Does nothing unless
+     * {@link #HONOR_IS_LOGGABLE_KEY} is enabled.
+     */
+    public static void refreshIsLoggable() {
+        if (sHonorIsLoggable) {
+            synchronized (ADAPTERS) {
+                final LoggerConfiguration configuration = sConfiguration;
+                if (getLoggableThreshold(configuration.getLogTag()) != configuration.getLoggableThreshold()) {
+                    publishConfiguration(configuration);
+                }
+            }
+        }
+    }
+
+    /**
+     * Enable or disable {@link #HONOR_IS_LOGGABLE_KEY} and apply it to all loggers. Does not start the periodic
+     * refresh, see {@link #refreshIsLoggable()}.
+     */
+    static void setHonorIsLoggable(final boolean honorIsLoggable) {
+        synchronized (ADAPTERS) {
+            sHonorIsLoggable = honorIsLoggable;
+            publishConfiguration(honorIsLoggable ? sConfiguration : sConfiguration.withLoggableThreshold(Log.VERBOSE));
+        }
+    }
+
+    /**
+     * Replace the properties of the configuration file, a missing or unreadable file leaves only the classpath
+     * properties.
+     */
+    private static void readConfigFile(final File file) {
+        final Properties properties = new Properties();
+        if (file.isFile()) {
+            InputStream inputStream = null;
+            try {
+                inputStream = new FileInputStream(file);
+                properties.load(inputStream);
+            } catch (final IOException ignored) {
+                properties.clear();
+            } finally {
+                if (inputStream != null) {
+                    try {
+                        inputStream.close();
+                    } catch (final IOException ignored) {
+                        // ignored
+                    }
+                }
+            }
+        }
+        ANDROID_LOGGER_PROPERTIES.clear();
+        ANDROID_LOGGER_PROPERTIES.putAll(properties);
+    }
+
+    /**
+     * Read the properties that can change while the process is running. Properties that are not configured get
+     * their default value, also replacing a level or tag set at runtime.
+     *
+     * @param configuration provides all other settings
+     */
+    private static LoggerConfiguration readLevels(final LoggerConfiguration configuration) {
+        final LogLevel logLevel = stringToLevel(getStringProperty(DEFAULT_LOG_LEVEL_KEY, DEFAULT_LOG_LEVEL.name()));
+        return configuration.withLevels(logLevel, getStringProperty(LOG_TAG_KEY, DEFAULT_LOG_TAG),
+            new LoggerLevelMap(logLevel.getAndroidLogLevel(), getPropertiesWithPrefix(LEVEL_KEY_PREFIX)),
+            new LoggerLevelMap(
+                LoggerLevelMap.parseThreshold(getStringProperty(CALLER_CAPTURE_LEVEL_KEY, LogLevel.TRACE.name())),
+                getPropertiesWithPrefix(CALLER_CAPTURE_LEVEL_KEY + ".")));
+    }
+
+    /**
+     * Read the configuration file again and apply log levels, log tag and caller capture levels to all loggers.
+     * The other properties keep the value they had on start.
+     */
+    static void reloadConfiguration(final File file) {
+        synchronized (ADAPTERS) {
+            readConfigFile(file);
+            publishConfiguration(readLevels(sConfiguration));
+        }
+    }
+
+    /**
+     * Make the given configuration the current one and resolve the cached levels of all loggers from it.
+     */
+    private static void publishConfiguration(final LoggerConfiguration configuration) {
+        synchronized (ADAPTERS) {
+            // the log tag may have changed
+            final LoggerConfiguration published = sHonorIsLoggable
+                ? configuration.withLoggableThreshold(getLoggableThreshold(configuration.getLogTag())) : configuration;
+            sConfiguration = published;
+            for (final AndroidLoggerAdapter adapter : ADAPTERS) {
+                adapter.resolveLevels(published);
+            }
         }
-        setLogTag(getStringProperty(LOG_TAG_KEY, "Slf4jAndroidLogger"));
     }
 
-    private final Pattern mClassNamePattern;
+    protected String name;
+    // Not serialized, a deserialized logger is replaced by readResolve()
+    private final transient FrameMatcher mFrameMatcher;
+    /**
+     * Throttles by level ordinal, or null if no level of this logger is throttled
+     */
+    private final transient LogThrottle[] mThrottles;
+    private transient volatile int mCallerCaptureThreshold;
+    /**
+     * Android priority from which on messages of this logger are logged, resolved from the configuration
+     */
+    private transient volatile int mLevelThreshold;
 
     /**
      * Package access allows only {@link AndroidLoggerFactory} to instantiate
@@ -146,23 +563,55 @@ public class AndroidLoggerAdapter extends MarkerIgnoringBase {
      */
     AndroidLoggerAdapter(final String tag) {
         name = tag;
-        mClassNamePattern = Pattern.compile(name + "(\\$+.*)?");
+        mFrameMatcher = new FrameMatcher(name);
+        mThrottles = createThrottles(name);
+        synchronized (ADAPTERS) {
+            resolveLevels(sConfiguration);
+            ADAPTERS.add(this);
+        }
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Replace a deserialized logger with the logger of the same name of this process.
+     */
+    protected Object readResolve() throws ObjectStreamException {
+        return LoggerFactory.getLogger(getName());
     }
 
+    /**
+     * @return the default log level of loggers without a configured level
+     */
     public static LogLevel getLogLevel() {
-        return sLogLevel;
+        return sConfiguration.getLogLevel();
     }
 
+    /**
+     * Set the default log level of loggers without a configured level.
+     */
     public static void setLogLevel(final LogLevel logLevel) {
-        sLogLevel = logLevel;
+        synchronized (ADAPTERS) {
+            publishConfiguration(sConfiguration.withLogLevel(logLevel));
+        }
+    }
+
+    private void resolveLevels(final LoggerConfiguration configuration) {
+        mLevelThreshold = configuration.resolveLevelThreshold(name);
+        mCallerCaptureThreshold = configuration.resolveCallerCaptureThreshold(name);
     }
 
     public static String getLogTag() {
-        return sLogTag;
+        return sConfiguration.getLogTag();
     }
 
     public static void setLogTag(final String logTag) {
-        sLogTag = logTag;
+        synchronized (ADAPTERS) {
+            publishConfiguration(sConfiguration.withLogTag(logTag));
+        }
     }
 
     /**
@@ -172,7 +621,7 @@ public class AndroidLoggerAdapter extends MarkerIgnoringBase {
      */
     @Override
     public boolean isTraceEnabled() {
-        return isLevelEnabled(LogLevel.TRACE);
+        return isEnabled(LogLevel.TRACE);
     }
 
     /**
@@ -182,7 +631,7 @@ public class AndroidLoggerAdapter extends MarkerIgnoringBase {
      */
     @Override
     public void trace(final String msg) {
-        log(LogLevel.TRACE, msg, null);
+        log(LogLevel.TRACE, null, msg, null);
     }
 
     /**
@@ -199,7 +648,7 @@ public class AndroidLoggerAdapter extends MarkerIgnoringBase {
      */
     @Override
     public void trace(final String format, final Object arg) {
-        formatAndLog(LogLevel.TRACE, format, arg);
+        formatAndLog(LogLevel.TRACE, null, format, arg);
     }
 
     /**
@@ -217,7 +666,7 @@ public class AndroidLoggerAdapter extends MarkerIgnoringBase {
      */
     @Override
     public void trace(final String format, final Object arg1, final Object arg2) {
-        formatAndLog(LogLevel.TRACE, format, arg1, arg2);
+        formatAndLog(LogLevel.TRACE, null, format, arg1, arg2);
     }
 
     /**
@@ -234,7 +683,7 @@ public class AndroidLoggerAdapter extends MarkerIgnoringBase {
      */
     @Override
     public void trace(final String format, final Object... argArray) {
-        formatAndLog(LogLevel.TRACE, format, argArray);
+        formatAndLog(LogLevel.TRACE, null, format, argArray);
     }
 
     /**
@@ -245,7 +694,78 @@ public class AndroidLoggerAdapter extends MarkerIgnoringBase {
      */
     @Override
     public void trace(final String msg, final Throwable t) {
-        log(LogLevel.TRACE, msg, t);
+        log(LogLevel.TRACE, null, msg, t);
+    }
+
+    /**
+     * Is this logger instance enabled for the VERBOSE level with the given marker?
+     *
+     * @param marker the marker data specific to this log statement
+     * @return True if this Logger is enabled for level VERBOSE with the marker, false otherwise.
+     */
+    @Override
+    public boolean isTraceEnabled(final Marker marker) {
+        return isLevelEnabled(LogLevel.TRACE, marker);
+    }
+
+    /**
+     * Log a message object with a marker at level VERBOSE.
+     *
+     * @param marker the marker data specific to this log statement
+     * @param msg    the message object to be logged
+     */
+    @Override
+    public void trace(final Marker marker, final String msg) {
+        log(LogLevel.TRACE, marker, msg, null);
+    }
+
+    /**
+     * Log a message with a marker at level VERBOSE according to the specified format and argument.
+     *
+     * @param marker the marker data specific to this log statement
+     * @param format the format string
+     * @param arg    the argument
+     */
+    @Override
+    public void trace(final Marker marker, final String format, final Object arg) {
+        formatAndLog(LogLevel.TRACE, marker, format, arg);
+    }
+
+    /**
+     * Log a message with a marker at level VERBOSE according to the specified format and arguments.
+     *
+     * @param marker the marker data specific to this log statement
+     * @param format the format string
+     * @param arg1   the first argument
+     * @param arg2   the second argument
+     */
+    @Override
+    public void trace(final Marker marker, final String format, final Object arg1, final Object arg2) {
+        formatAndLog(LogLevel.TRACE, marker, format, arg1, arg2);
+    }
+
+    /**
+     * Log a message with a marker at level VERBOSE according to the specified format and arguments.
+     *
+     * @param marker   the marker data specific to this log statement
+     * @param format   the format string
+     * @param argArray an array of arguments
+     */
+    @Override
+    public void trace(final Marker marker, final String format, final Object... argArray) {
+        formatAndLog(LogLevel.TRACE, marker, format, argArray);
+    }
+
+    /**
+     * Log an exception (throwable) with a marker at level VERBOSE with an accompanying message.
+     *
+     * @param marker the marker data specific to this log statement
+     * @param msg    the message accompanying the exception
+     * @param t      the exception (throwable) to log
+     */
+    @Override
+    public void trace(final Marker marker, final String msg, final Throwable t) {
+        log(LogLevel.TRACE, marker, msg, t);
     }
 
     /**
@@ -255,7 +775,7 @@ public class AndroidLoggerAdapter extends MarkerIgnoringBase {
      */
     @Override
     public boolean isDebugEnabled() {
-        return isLevelEnabled(LogLevel.DEBUG);
+        return isEnabled(LogLevel.DEBUG);
     }
 
     /**
@@ -265,7 +785,7 @@ public class AndroidLoggerAdapter extends MarkerIgnoringBase {
      */
     @Override
     public void debug(final String msg) {
-        log(LogLevel.DEBUG, msg, null);
+        log(LogLevel.DEBUG, null, msg, null);
     }
 
     /**
@@ -281,7 +801,7 @@ public class AndroidLoggerAdapter extends MarkerIgnoringBase {
      */
     @Override
     public void debug(final String format, final Object arg) {
-        formatAndLog(LogLevel.DEBUG, format, arg);
+        formatAndLog(LogLevel.DEBUG, null, format, arg);
     }
 
     /**
@@ -299,7 +819,7 @@ public class AndroidLoggerAdapter extends MarkerIgnoringBase {
      */
     @Override
     public void debug(final String format, final Object arg1, final Object arg2) {
-        formatAndLog(LogLevel.DEBUG, format, arg1, arg2);
+        formatAndLog(LogLevel.DEBUG, null, format, arg1, arg2);
     }
 
     /**
@@ -316,7 +836,7 @@ public class AndroidLoggerAdapter extends MarkerIgnoringBase {
      */
     @Override
     public void debug(final String format, final Object... argArray) {
-        formatAndLog(LogLevel.DEBUG, format, argArray);
+        formatAndLog(LogLevel.DEBUG, null, format, argArray);
     }
 
     /**
@@ -327,7 +847,78 @@ public class AndroidLoggerAdapter extends MarkerIgnoringBase {
      */
     @Override
     public void debug(final String msg, final Throwable t) {
-        log(LogLevel.DEBUG, msg, t);
+        log(LogLevel.DEBUG, null, msg, t);
+    }
+
+    /**
+     * Is this logger instance enabled for the DEBUG level with the given marker?
+     *
+     * @param marker the marker data specific to this log statement
+     * @return True if this Logger is enabled for level DEBUG with the marker, false otherwise.
+     */
+    @Override
+    public boolean isDebugEnabled(final Marker marker) {
+        return isLevelEnabled(LogLevel.DEBUG, marker);
+    }
+
+    /**
+     * Log a message object with a marker at level DEBUG.
+     *
+     * @param marker the marker data specific to this log statement
+     * @param msg    the message object to be logged
+     */
+    @Override
+    public void debug(final Marker marker, final String msg) {
+        log(LogLevel.DEBUG, marker, msg, null);
+    }
+
+    /**
+     * Log a message with a marker at level DEBUG according to the specified format and argument.
+     *
+     * @param marker the marker data specific to this log statement
+     * @param format the format string
+     * @param arg    the argument
+     */
+    @Override
+    public void debug(final Marker marker, final String format, final Object arg) {
+        formatAndLog(LogLevel.DEBUG, marker, format, arg);
+    }
+
+    /**
+     * Log a message with a marker at level DEBUG according to the specified format and arguments.
+     *
+     * @param marker the marker data specific to this log statement
+     * @param format the format string
+     * @param arg1   the first argument
+     * @param arg2   the second argument
+     */
+    @Override
+    public void debug(final Marker marker, final String format, final Object arg1, final Object arg2) {
+        formatAndLog(LogLevel.DEBUG, marker, format, arg1, arg2);
+    }
+
+    /**
+     * Log a message with a marker at level DEBUG according to the specified format and arguments.
+     *
+     * @param marker   the marker data specific to this log statement
+     * @param format   the format string
+     * @param argArray an array of arguments
+     */
+    @Override
+    public void debug(final Marker marker, final String format, final Object... argArray) {
+        formatAndLog(LogLevel.DEBUG, marker, format, argArray);
+    }
+
+    /**
+     * Log an exception (throwable) with a marker at level DEBUG with an accompanying message.
+     *
+     * @param marker the marker data specific to this log statement
+     * @param msg    the message accompanying the exception
+     * @param t      the exception (throwable) to log
+     */
+    @Override
+    public void debug(final Marker marker, final String msg, final Throwable t) {
+        log(LogLevel.DEBUG, marker, msg, t);
     }
 
     /**
@@ -337,7 +928,7 @@ public class AndroidLoggerAdapter extends MarkerIgnoringBase {
      */
     @Override
     public boolean isInfoEnabled() {
-        return isLevelEnabled(LogLevel.INFO);
+        return isEnabled(LogLevel.INFO);
     }
 
     /**
@@ -347,7 +938,7 @@ public class AndroidLoggerAdapter extends MarkerIgnoringBase {
      */
     @Override
     public void info(final String msg) {
-        log(LogLevel.INFO, msg, null);
+        log(LogLevel.INFO, null, msg, null);
     }
 
     /**
@@ -363,7 +954,7 @@ public class AndroidLoggerAdapter extends MarkerIgnoringBase {
      */
     @Override
     public void info(final String format, final Object arg) {
-        formatAndLog(LogLevel.INFO, format, arg);
+        formatAndLog(LogLevel.INFO, null, format, arg);
     }
 
     /**
@@ -381,7 +972,7 @@ public class AndroidLoggerAdapter extends MarkerIgnoringBase {
      */
     @Override
     public void info(final String format, final Object arg1, final Object arg2) {
-        formatAndLog(LogLevel.INFO, format, arg1, arg2);
+        formatAndLog(LogLevel.INFO, null, format, arg1, arg2);
     }
 
     /**
@@ -398,7 +989,7 @@ public class AndroidLoggerAdapter extends MarkerIgnoringBase {
      */
     @Override
     public void info(final String format, final Object... argArray) {
-        formatAndLog(LogLevel.INFO, format, argArray);
+        formatAndLog(LogLevel.INFO, null, format, argArray);
     }
 
     /**
@@ -410,7 +1001,78 @@ public class AndroidLoggerAdapter extends MarkerIgnoringBase {
      */
     @Override
     public void info(final String msg, final Throwable t) {
-        log(LogLevel.INFO, msg, t);
+        log(LogLevel.INFO, null, msg, t);
+    }
+
+    /**
+     * Is this logger instance enabled for the INFO level with the given marker?
+     *
+     * @param marker the marker data specific to this log statement
+     * @return True if this Logger is enabled for level INFO with the marker, false otherwise.
+     */
+    @Override
+    public boolean isInfoEnabled(final Marker marker) {
+        return isLevelEnabled(LogLevel.INFO, marker);
+    }
+
+    /**
+     * Log a message object with a marker at level INFO.
+     *
+     * @param marker the marker data specific to this log statement
+     * @param msg    the message object to be logged
+     */
+    @Override
+    public void info(final Marker marker, final String msg) {
+        log(LogLevel.INFO, marker, msg, null);
+    }
+
+    /**
+     * Log a message with a marker at level INFO according to the specified format and argument.
+     *
+     * @param marker the marker data specific to this log statement
+     * @param format the format string
+     * @param arg    the argument
+     */
+    @Override
+    public void info(final Marker marker, final String format, final Object arg) {
+        formatAndLog(LogLevel.INFO, marker, format, arg);
+    }
+
+    /**
+     * Log a message with a marker at level INFO according to the specified format and arguments.
+     *
+     * @param marker the marker data specific to this log statement
+     * @param format the format string
+     * @param arg1   the first argument
+     * @param arg2   the second argument
+     */
+    @Override
+    public void info(final Marker marker, final String format, final Object arg1, final Object arg2) {
+        formatAndLog(LogLevel.INFO, marker, format, arg1, arg2);
+    }
+
+    /**
+     * Log a message with a marker at level INFO according to the specified format and arguments.
+     *
+     * @param marker   the marker data specific to this log statement
+     * @param format   the format string
+     * @param argArray an array of arguments
+     */
+    @Override
+    public void info(final Marker marker, final String format, final Object... argArray) {
+        formatAndLog(LogLevel.INFO, marker, format, argArray);
+    }
+
+    /**
+     * Log an exception (throwable) with a marker at level INFO with an accompanying message.
+     *
+     * @param marker the marker data specific to this log statement
+     * @param msg    the message accompanying the exception
+     * @param t      the exception (throwable) to log
+     */
+    @Override
+    public void info(final Marker marker, final String msg, final Throwable t) {
+        log(LogLevel.INFO, marker, msg, t);
     }
 
     /**
@@ -421,7 +1083,7 @@ public class AndroidLoggerAdapter extends MarkerIgnoringBase {
      */
     @Override
     public boolean isWarnEnabled() {
-        return isLevelEnabled(LogLevel.WARN);
+        return isEnabled(LogLevel.WARN);
     }
 
     /**
@@ -431,7 +1093,7 @@ public class AndroidLoggerAdapter extends MarkerIgnoringBase {
      */
     @Override
     public void warn(final String msg) {
-        log(LogLevel.WARN, msg, null);
+        log(LogLevel.WARN, null, msg, null);
     }
 
     /**
@@ -448,7 +1110,7 @@ public class AndroidLoggerAdapter extends MarkerIgnoringBase {
      */
     @Override
     public void warn(final String format, final Object arg) {
-        formatAndLog(LogLevel.WARN, format, arg);
+        formatAndLog(LogLevel.WARN, null, format, arg);
     }
 
     /**
@@ -466,7 +1128,7 @@ public class AndroidLoggerAdapter extends MarkerIgnoringBase {
      */
     @Override
     public void warn(final String format, final Object arg1, final Object arg2) {
-        formatAndLog(LogLevel.WARN, format, arg1, arg2);
+        formatAndLog(LogLevel.WARN, null, format, arg1, arg2);
     }
 
     /**
@@ -483,7 +1145,7 @@ public class AndroidLoggerAdapter extends MarkerIgnoringBase {
      */
     @Override
     public void warn(final String format, final Object... argArray) {
-        formatAndLog(LogLevel.WARN, format, argArray);
+        formatAndLog(LogLevel.WARN, null, format, argArray);
     }
 
     /**
@@ -495,7 +1157,78 @@ public class AndroidLoggerAdapter extends MarkerIgnoringBase {
      */
     @Override
     public void warn(final String msg, final Throwable t) {
-        log(LogLevel.WARN, msg, t);
+        log(LogLevel.WARN, null, msg, t);
+    }
+
+    /**
+     * Is this logger instance enabled for the WARN level with the given marker?
+     *
+     * @param marker the marker data specific to this log statement
+     * @return True if this Logger is enabled for level WARN with the marker, false otherwise.
+     */
+    @Override
+    public boolean isWarnEnabled(final Marker marker) {
+        return isLevelEnabled(LogLevel.WARN, marker);
+    }
+
+    /**
+     * Log a message object with a marker at level WARN.
+     *
+     * @param marker the marker data specific to this log statement
+     * @param msg    the message object to be logged
+     */
+    @Override
+    public void warn(final Marker marker, final String msg) {
+        log(LogLevel.WARN, marker, msg, null);
+    }
+
+    /**
+     * Log a message with a marker at level WARN according to the specified format and argument.
+     *
+     * @param marker the marker data specific to this log statement
+     * @param format the format string
+     * @param arg    the argument
+     */
+    @Override
+    public void warn(final Marker marker, final String format, final Object arg) {
+        formatAndLog(LogLevel.WARN, marker, format, arg);
+    }
+
+    /**
+     * Log a message with a marker at level WARN according to the specified format and arguments.
+     *
+     * @param marker the marker data specific to this log statement
+     * @param format the format string
+     * @param arg1   the first argument
+     * @param arg2   the second argument
+     */
+    @Override
+    public void warn(final Marker marker, final String format, final Object arg1, final Object arg2) {
+        formatAndLog(LogLevel.WARN, marker, format, arg1, arg2);
+    }
+
+    /**
+     * Log a message with a marker at level WARN according to the specified format and arguments.
+     *
+     * @param marker   the marker data specific to this log statement
+     * @param format   the format string
+     * @param argArray an array of arguments
+     */
+    @Override
+    public void warn(final Marker marker, final String format, final Object... argArray) {
+        formatAndLog(LogLevel.WARN, marker, format, argArray);
+    }
+
+    /**
+     * Log an exception (throwable) with a marker at level WARN with an accompanying message.
+     *
+     * @param marker the marker data specific to this log statement
+     * @param msg    the message accompanying the exception
+     * @param t      the exception (throwable) to log
+     */
+    @Override
+    public void warn(final Marker marker, final String msg, final Throwable t) {
+        log(LogLevel.WARN, marker, msg, t);
     }
 
     /**
@@ -505,7 +1238,7 @@ public class AndroidLoggerAdapter extends MarkerIgnoringBase {
      */
     @Override
     public boolean isErrorEnabled() {
-        return isLevelEnabled(LogLevel.ERROR);
+        return isEnabled(LogLevel.ERROR);
     }
 
     /**
@@ -515,7 +1248,7 @@ public class AndroidLoggerAdapter extends MarkerIgnoringBase {
      */
     @Override
     public void error(final String msg) {
-        log(LogLevel.ERROR, msg, null);
+        log(LogLevel.ERROR, null, msg, null);
     }
 
     /**
@@ -532,7 +1265,7 @@ public class AndroidLoggerAdapter extends MarkerIgnoringBase {
      */
     @Override
     public void error(final String format, final Object arg) {
-        formatAndLog(LogLevel.ERROR, format, arg);
+        formatAndLog(LogLevel.ERROR, null, format, arg);
     }
 
     /**
@@ -550,7 +1283,7 @@ public class AndroidLoggerAdapter extends MarkerIgnoringBase {
      */
     @Override
     public void error(final String format, final Object arg1, final Object arg2) {
-        formatAndLog(LogLevel.ERROR, format, arg1, arg2);
+        formatAndLog(LogLevel.ERROR, null, format, arg1, arg2);
     }
 
     /**
@@ -567,7 +1300,7 @@ public class AndroidLoggerAdapter extends MarkerIgnoringBase {
      */
     @Override
     public void error(final String format, final Object... argArray) {
-        formatAndLog(LogLevel.ERROR, format, argArray);
+        formatAndLog(LogLevel.ERROR, null, format, argArray);
     }
 
     /**
@@ -579,79 +1312,414 @@ public class AndroidLoggerAdapter extends MarkerIgnoringBase {
      */
     @Override
     public void error(final String msg, final Throwable t) {
-        log(LogLevel.ERROR, msg, t);
-    }
-
-    private void formatAndLog(final LogLevel logLevel, final String format, final Object... argArray) {
-        if (isLevelEnabled(logLevel)) {
-            final FormattingTuple ft = MessageFormatter.arrayFormat(format, argArray);
-            log(logLevel, ft.getMessage(), ft.getThrowable());
-        }
-    }
-
-    private void log(final LogLevel logLevel, final String message, final Throwable throwable) {
-        if (isLevelEnabled(logLevel)) {
-            switch (logLevel.getAndroidLogLevel()) {
-                case Log.VERBOSE:
-                    logAndroidVerbose(message, throwable);
-                    break;
-                case Log.DEBUG:
-                    logAndroidDebug(message, throwable);
-                    break;
-                case Log.INFO:
-                    logAndroidInfo(message, throwable);
-                    break;
-                case Log.WARN:
-                    logAndroidWarn(message, throwable);
-                    break;
-                case Log.ERROR:
-                    logAndroidError(message, throwable);
-                    break;
-                default:
-                    // nop
-                    break;
+        log(LogLevel.ERROR, null, msg, t);
+    }
+
+    /**
+     * Is this logger instance enabled for the ERROR level with the given marker?
+     *
+     * @param marker the marker data specific to this log statement
+     * @return True if this Logger is enabled for level ERROR with the marker, false otherwise.
+     */
+    @Override
+    public boolean isErrorEnabled(final Marker marker) {
+        return isLevelEnabled(LogLevel.ERROR, marker);
+    }
+
+    /**
+     * Log a message object with a marker at level ERROR.
+     *
+     * @param marker the marker data specific to this log statement
+     * @param msg    the message object to be logged
+     */
+    @Override
+    public void error(final Marker marker, final String msg) {
+        log(LogLevel.ERROR, marker, msg, null);
+    }
+
+    /**
+     * Log a message with a marker at level ERROR according to the specified format and argument.
+     *
+     * @param marker the marker data specific to this log statement
+     * @param format the format string
+     * @param arg    the argument
+     */
+    @Override
+    public void error(final Marker marker, final String format, final Object arg) {
+        formatAndLog(LogLevel.ERROR, marker, format, arg);
+    }
+
+    /**
+     * Log a message with a marker at level ERROR according to the specified format and arguments.
+     *
+     * @param marker the marker data specific to this log statement
+     * @param format the format string
+     * @param arg1   the first argument
+     * @param arg2   the second argument
+     */
+    @Override
+    public void error(final Marker marker, final String format, final Object arg1, final Object arg2) {
+        formatAndLog(LogLevel.ERROR, marker, format, arg1, arg2);
+    }
+
+    /**
+     * Log a message with a marker at level ERROR according to the specified format and arguments.
+     *
+     * @param marker   the marker data specific to this log statement
+     * @param format   the format string
+     * @param argArray an array of arguments
+     */
+    @Override
+    public void error(final Marker marker, final String format, final Object... argArray) {
+        formatAndLog(LogLevel.ERROR, marker, format, argArray);
+    }
+
+    /**
+     * Log an exception (throwable) with a marker at level ERROR with an accompanying message.
+     *
+     * @param marker the marker data specific to this log statement
+     * @param msg    the message accompanying the exception
+     * @param t      the exception (throwable) to log
+     */
+    @Override
+    public void error(final Marker marker, final String msg, final Throwable t) {
+        log(LogLevel.ERROR, marker, msg, t);
+    }
+
+    private void formatAndLog(final LogLevel logLevel, final Marker marker, final String format, final Object arg) {
+        if (isThrottled(logLevel, marker)) {
+            return;
+        }
+        if (isRecorded(logLevel, marker)) {
+            if (arg instanceof Throwable) {
+                sRecorder.record(name, logLevel, format, null, null, null, 0, (Throwable) arg);
+            } else {
+                sRecorder.record(name, logLevel, format, arg, null, null, 1, null);
+            }
+        }
+        if (isLevelEnabled(logLevel, marker)) {
+            if (arg instanceof Throwable) {
+                log(logLevel, marker, format, null, null, null, 0, (Throwable) arg);
+            } else {
+                log(logLevel, marker, format, arg, null, null, 1, null);
             }
         }
     }
 
-    private void logAndroidVerbose(final String message, final Throwable throwable) {
-        if (throwable != null) {
-            Log.v(getLogTag(), enhanced(message), throwable);
-        } else {
-            Log.v(getLogTag(), enhanced(message));
+    private void formatAndLog(final LogLevel logLevel, final Marker marker, final String format, final Object arg1,
+                              final Object arg2) {
+        if (isThrottled(logLevel, marker)) {
+            return;
+        }
+        if (isRecorded(logLevel, marker)) {
+            if (arg2 instanceof Throwable) {
+                sRecorder.record(name, logLevel, format, arg1, null, null, 1, (Throwable) arg2);
+            } else {
+                sRecorder.record(name, logLevel, format, arg1, arg2, null, 2, null);
+            }
+        }
+        if (isLevelEnabled(logLevel, marker)) {
+            if (arg2 instanceof Throwable) {
+                log(logLevel, marker, format, arg1, null, null, 1, (Throwable) arg2);
+            } else {
+                log(logLevel, marker, format, arg1, arg2, null, 2, null);
+            }
         }
     }
 
-    private void logAndroidDebug(final String message, final Throwable throwable) {
-        if (throwable != null) {
-            Log.d(getLogTag(), enhanced(message), throwable);
-        } else {
-            Log.d(getLogTag(), enhanced(message));
+    private void formatAndLog(final LogLevel logLevel, final Marker marker, final String format,
+                              final Object[] argArray) {
+        if (isThrottled(logLevel, marker)) {
+            return;
+        }
+        if (isRecorded(logLevel, marker)) {
+            if (argArray == null || argArray.length == 0) {
+                sRecorder.record(name, logLevel, format, null, null, null, 0, null);
+            } else if (argArray[argArray.length - 1] instanceof Throwable) {
+                sRecorder.record(name, logLevel, format, null, null, argArray, argArray.length - 1,
+                    (Throwable) argArray[argArray.length - 1]);
+            } else {
+                sRecorder.record(name, logLevel, format, null, null, argArray, argArray.length, null);
+            }
+        }
+        if (isLevelEnabled(logLevel, marker)) {
+            if (argArray == null || argArray.length == 0) {
+                log(logLevel, marker, format, null, null, null, 0, null);
+                return;
+            }
+            final Object last = argArray[argArray.length - 1];
+            if (last instanceof Throwable) {
+                log(logLevel, marker, format, null, null, argArray, argArray.length - 1, (Throwable) last);
+            } else {
+                log(logLevel, marker, format, null, null, argArray, argArray.length, null);
+            }
         }
     }
 
-    private void logAndroidInfo(final String message, final Throwable throwable) {
-        if (throwable != null) {
-            Log.i(getLogTag(), enhanced(message), throwable);
-        } else {
-            Log.i(getLogTag(), enhanced(message));
+    private void log(final LogLevel logLevel, final Marker marker, final String message, final Throwable throwable) {
+        if (isThrottled(logLevel, marker)) {
+            return;
+        }
+        if (isRecorded(logLevel, marker)) {
+            sRecorder.record(name, logLevel, message, null, null, null, 0, throwable);
+        }
+        log(logLevel, marker, message, null, null, null, 0, throwable);
+    }
+
+    /**
+     * The message is not formatted here but by the first sink that needs it. The arguments are passed as in
+     * {@link LogEvent}, so one or two arguments and a trailing throwable need no array.
+     *
+     * @param messagePattern the message pattern, or the message if it has no arguments
+     * @param argument1      the first argument if {@code arguments} is null
+     * @param argument2      the second argument if {@code arguments} is null
+     * @param arguments      all arguments, or null
+     * @param argumentCount  the number of arguments without the throwable
+     */
+    private void log(final LogLevel logLevel, final Marker marker, final String messagePattern,
+                     final Object argument1, final Object argument2, final Object[] arguments,
+                     final int argumentCount, final Throwable throwable) {
+        if (isLevelEnabled(logLevel, marker)) {
+            final LoggerConfiguration configuration = sConfiguration;
+            LogEvent[] heldEvents = null;
+            if (sTriggerBuffer != null) {
+                if (sTriggerBuffer.isHeld(logLevel)) {
+                    sTriggerBuffer.hold(createSnapshotEvent(configuration, logLevel, marker, messagePattern, argument1,
+                        argument2, arguments, argumentCount, throwable));
+                    return;
+                }
+                if (sTriggerBuffer.isTrigger(logLevel)) {
+                    heldEvents = sTriggerBuffer.release();
+                }
+            }
+            if (sAsyncDispatcher != null) {
+                final LogEvent event = createSnapshotEvent(configuration, logLevel, marker, messagePattern, argument1,
+                    argument2, arguments, argumentCount, throwable);
+                if (heldEvents != null) {
+                    // the held events go the same way as the trigger, which may skip the queue
+                    sAsyncDispatcher.dispatch(heldEvents, event);
+                } else {
+                    sAsyncDispatcher.dispatch(event);
+                }
+            } else {
+                if (heldEvents != null) {
+                    for (final LogEvent heldEvent : heldEvents) {
+                        sLogSink.write(heldEvent);
+                    }
+                }
+                // sinks keeping the event take what they need of the arguments before write returns, see LogSink
+                sLogSink.write(createEvent(configuration, logLevel, marker, messagePattern, argument1, argument2,
+                    arguments, argumentCount, throwable));
+            }
+        }
+    }
+
+    /**
+     * @return true if the message is dropped by sampling or the rate limit. Only messages that would be logged or
+     * recorded count against the limit.
+     */
+    private boolean isThrottled(final LogLevel logLevel, final Marker marker) {
+        if (mThrottles == null) {
+            return false;
+        }
+        final LogThrottle throttle = mThrottles[logLevel.ordinal()];
+        return throttle != null && (isLevelEnabled(logLevel, marker) || isRecorded(logLevel, marker)) && !throttle.tryAcquire();
+    }
+
+    private static LogThrottle[] createThrottles(final String loggerName) {
+        if (sRateLimits == null && sSampleRates == null) {
+            return null;
+        }
+        final LogThrottle[] throttles = new LogThrottle[LogLevel.values().length];
+        boolean throttled = false;
+        for (int i = 0; i < throttles.length; i++) {
+            final int sampleRate = sSampleRates != null ? sSampleRates[i].resolve(loggerName) : 1;
+            final int rateLimit = sRateLimits != null ? sRateLimits[i].resolve(loggerName) : 0;
+            if (sampleRate > 1 || rateLimit > 0) {
+                throttles[i] = new LogThrottle(sampleRate, rateLimit);
+                throttled = true;
+            }
+        }
+        return throttled ? throttles : null;
+    }
+
+    /**
+     * Write a warning for every logger that dropped messages by sampling or rate limit since the last report.
+     */
+    static void reportSuppressed() {
+        final List<AndroidLoggerAdapter> adapters;
+        synchronized (ADAPTERS) {
+            adapters = new ArrayList<AndroidLoggerAdapter>(ADAPTERS);
+        }
+        for (final AndroidLoggerAdapter adapter : adapters) {
+            if (adapter.mThrottles != null) {
+                adapter.reportSuppressedMessages();
+            }
+        }
+    }
+
+    private void reportSuppressedMessages() {
+        StringBuilder message = null;
+        long total = 0;
+        for (final LogLevel level : LogLevel.values()) {
+            final LogThrottle throttle = mThrottles[level.ordinal()];
+            final long suppressed = throttle != null ? throttle.drainSuppressed() : 0;
+            if (suppressed > 0) {
+                message = message == null ? new StringBuilder(" (") : message.append(", ");
+                message.append(level.name()).append('=').append(suppressed);
+                total += suppressed;
+            }
+        }
+        if (message == null) {
+            return;
         }
+        message.insert(0, " messages suppressed by sampling or rate limit").insert(0, total).append(')');
+        dispatch(new LogEvent(name, LogLevel.WARN, message.toString(), null, null, Thread.currentThread(),
+            System.currentTimeMillis(), null));
     }
 
-    private void logAndroidWarn(final String message, final Throwable throwable) {
-        if (throwable != null) {
-            Log.w(getLogTag(), enhanced(message), throwable);
+    private static void dispatch(final LogEvent event) {
+        if (sAsyncDispatcher != null) {
+            sAsyncDispatcher.dispatch(event);
         } else {
-            Log.w(getLogTag(), enhanced(message));
+            sLogSink.write(event);
+        }
+    }
+
+    /**
+     * Create an event that is written after the log request returned, with its arguments protected according
+     * to the snapshot policy.
+     */
+    private LogEvent createSnapshotEvent(final LoggerConfiguration configuration, final LogLevel logLevel,
+                                         final Marker marker, final String messagePattern, final Object argument1,
+                                         final Object argument2, final Object[] arguments, final int argumentCount,
+                                         final Throwable throwable) {
+        final ArgumentSnapshot argumentSnapshot = configuration.getArgumentSnapshot();
+        final LogEvent event = createEvent(configuration, logLevel, marker, messagePattern,
+            argumentSnapshot.snapshot(argument1), argumentSnapshot.snapshot(argument2),
+            argumentSnapshot.snapshot(arguments, argumentCount), argumentCount, throwable);
+        if (argumentSnapshot == ArgumentSnapshot.MESSAGE) {
+            // the event caches the message, later changes of the arguments are not seen
+            event.getMessage();
         }
+        return event;
     }
 
-    private void logAndroidError(final String message, final Throwable throwable) {
-        if (throwable != null) {
-            Log.e(getLogTag(), enhanced(message), throwable);
+    /**
+     * Capture everything about the log request that has to be determined on the logging thread.
+     */
+    private LogEvent createEvent(final LoggerConfiguration configuration, final LogLevel logLevel,
+                                 final Marker marker, final String messagePattern, final Object argument1,
+                                 final Object argument2, final Object[] arguments, final int argumentCount,
+                                 final Throwable throwable) {
+        final StackTraceElement caller;
+        if (configuration.getLayout().requiresCaller() && logLevel.getAndroidLogLevel() >= mCallerCaptureThreshold) {
+            caller = determineCaller(configuration);
+        } else {
+            caller = null;
+        }
+        final Map<String, String> mdc;
+        final MDCAdapter mdcAdapter = MDC.getMDCAdapter();
+        if (mdcAdapter instanceof AndroidMDCAdapter) {
+            // immutable, taking it costs nothing
+            mdc = ((AndroidMDCAdapter) mdcAdapter).getContextMap();
+        } else if (configuration.getLayout().requiresMdc() || configuration.getLayoutWithoutCaller().requiresMdc()) {
+            mdc = MDC.getCopyOfContextMap();
         } else {
-            Log.e(getLogTag(), enhanced(message));
+            mdc = null;
+        }
+        return new LogEvent(name, logLevel, marker, messagePattern, argument1, argument2, arguments, argumentCount,
+            throwable, caller, Thread.currentThread(), System.currentTimeMillis(), mdc);
+    }
+
+    /**
+     * Write the messages kept by the recorder, from the oldest to the newest, e.g. into a crash report. Each
+     * message is written on its own line prefixed with date and level. Nothing is written if the recorder is
+     * disabled.
+     *
+     * @param out receives the messages
+     * @see #RECORDER_SIZE_KEY
+     */
+    public static void dumpRecentEvents(final Appendable out) throws IOException {
+        if (sRecorder != null) {
+            final LoggerConfiguration configuration = sConfiguration;
+            sRecorder.dump(configuration.getLayout(), configuration.getLayoutWithoutCaller(), out);
+        }
+    }
+
+    /**
+     * Write the messages kept by the recorder to the given file as UTF-8, replacing its content.
+     *
+     * @see #dumpRecentEvents(Appendable)
+     */
+    public static void dumpRecentEvents(final File file) throws IOException {
+        final Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+        try {
+            dumpRecentEvents(writer);
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * @return the log line for the given event, rendered with the configured layout
+     */
+    static String render(final LogEvent event) {
+        return sConfiguration.render(event);
+    }
+
+    static int getMaxMessageBytes() {
+        return sConfiguration.getMaxMessageBytes();
+    }
+
+    /**
+     * Create the configured sinks, falling back to logcat if none of them could be created.
+     */
+    private static LogSink createLogSink() {
+        final String[] names = getStringProperty(SINKS_KEY, LogSinks.LOGCAT).split(",");
+        final LogSink[] sinks = new LogSink[names.length];
+        final int[] thresholds = new int[names.length];
+        final long[][] markers = new long[names.length][];
+        final long[][] excludedMarkers = new long[names.length][];
+        int count = 0;
+        for (final String name : names) {
+            if (name.trim().length() == 0) {
+                continue;
+            }
+            final Map<String, String> properties = getPropertiesWithPrefix(SINK_KEY_PREFIX + name.trim() + ".");
+            final String type = properties.containsKey(SINK_TYPE_PROPERTY) ? properties.get(SINK_TYPE_PROPERTY)
+                : name.trim();
+            final LogSink sink = LogSinks.create(type.trim(), properties);
+            if (sink != null) {
+                sinks[count] = sink;
+                thresholds[count] = properties.containsKey(SINK_LEVEL_PROPERTY)
+                    ? LoggerLevelMap.parseThreshold(properties.get(SINK_LEVEL_PROPERTY)) : Log.VERBOSE;
+                markers[count] = AndroidMarker.bitsOf(properties.get(SINK_MARKERS_PROPERTY));
+                excludedMarkers[count] = AndroidMarker.bitsOf(properties.get(SINK_EXCLUDE_MARKERS_PROPERTY));
+                count++;
+            }
         }
+        if (count == 0) {
+            return new LogcatSink(getMaxMessageBytes());
+        }
+        return new CompositeLogSink(Arrays.copyOf(sinks, count), Arrays.copyOf(thresholds, count),
+            Arrays.copyOf(markers, count), Arrays.copyOf(excludedMarkers, count));
+    }
+
+    /**
+     * @return true if messages of the given level and marker are kept by the recorder, denied markers are not
+     */
+    private static boolean isRecorded(final LogLevel logLevel, final Marker marker) {
+        return sRecorder != null && sRecorder.isRecorded(logLevel) && !isDenied(marker);
+    }
+
+    /**
+     * @param marker the marker, or null
+     * @return true if the marker or one of its references is denied by {@link #MARKER_DENY_KEY}
+     */
+    private static boolean isDenied(final Marker marker) {
+        return marker != null && sDeniedMarkers != null
+            && AndroidMarker.intersects(AndroidMarker.bitsOf(marker), sDeniedMarkers);
     }
 
     // Property getter
@@ -670,49 +1738,146 @@ public class AndroidLoggerAdapter extends MarkerIgnoringBase {
         return prop == null ? defaultValue : prop;
     }
 
-    private static boolean getBooleanProperty(final String propertyName, final boolean defaultValue) {
+    private static int getIntProperty(final String propertyName, final int defaultValue) {
         final String prop = getStringProperty(propertyName);
-        return prop == null ? defaultValue : "true".equalsIgnoreCase(prop);
+        if (prop != null) {
+            try {
+                return Integer.parseInt(prop.trim());
+            } catch (NumberFormatException ignored) {
+            }
+        }
+        return defaultValue;
     }
 
-    private String enhanced(final String message) {
-        final StackTraceElement caller = determineCaller();
-        final String classNameOnly = getClassNameOnly(caller.getClassName());
-        final String methodName = caller.getMethodName();
-        final int lineNumber = caller.getLineNumber();
-        final Thread thread = Thread.currentThread();
-        return String.format(Locale.ENGLISH, "%s [%s:%s:%s] %s", message, classNameOnly, methodName, lineNumber, thread);
+    private static long getLongProperty(final String propertyName, final long defaultValue) {
+        final String prop = getStringProperty(propertyName);
+        if (prop != null) {
+            try {
+                return Long.parseLong(prop.trim());
+            } catch (NumberFormatException ignored) {
+            }
+        }
+        return defaultValue;
+    }
+
+    /**
+     * @return all properties whose name starts with the given prefix, keyed by the remainder of their name
+     */
+    private static Map<String, String> getPropertiesWithPrefix(final String prefix) {
+        final Map<String, String> result = new HashMap<String, String>();
+        for (final String propertyName : ANDROID_LOGGER_PROPERTIES.stringPropertyNames()) {
+            if (propertyName.startsWith(prefix)) {
+                result.put(propertyName.substring(prefix.length()), ANDROID_LOGGER_PROPERTIES.getProperty(propertyName));
+            }
+        }
+        try {
+            for (final String propertyName : System.getProperties().stringPropertyNames()) {
+                if (propertyName.startsWith(prefix)) {
+                    result.put(propertyName.substring(prefix.length()), System.getProperty(propertyName));
+                }
+            }
+        } catch (SecurityException ignored) {
+        }
+        return result;
     }
 
-    private StackTraceElement determineCaller() {
-        final StackTraceElement[] stackTrace = new DetermineCallerException().getStackTrace();
-        for (final StackTraceElement element : stackTrace) {
-            if (mClassNamePattern.matcher(element.getClassName()).matches()) {
-                return element;
+    /**
+     * Read numbers configured by logger name prefix, optionally only for one level, e.g. {@code DEBUG.com.acme=5}.
+     * A level without prefix, e.g. {@code DEBUG=5}, applies to all loggers.
+     *
+     * @return a map for each level by ordinal, or null if nothing is configured
+     */
+    private static LoggerLevelMap[] getLevelValues(final String prefix, final int defaultValue) {
+        final Map<String, String> properties = getPropertiesWithPrefix(prefix);
+        if (properties.isEmpty()) {
+            return null;
+        }
+        final Map<String, String> allLevels = new HashMap<String, String>(properties);
+        for (final LogLevel level : LogLevel.values()) {
+            final Iterator<String> iterator = allLevels.keySet().iterator();
+            while (iterator.hasNext()) {
+                final String key = iterator.next();
+                if (key.equals(level.name()) || key.startsWith(level.name() + ".")) {
+                    iterator.remove();
+                }
+            }
+        }
+        final LoggerLevelMap[] maps = new LoggerLevelMap[LogLevel.values().length];
+        for (final LogLevel level : LogLevel.values()) {
+            final Map<String, String> values = new HashMap<String, String>(allLevels);
+            final String levelPrefix = level.name() + ".";
+            for (final Map.Entry<String, String> entry : properties.entrySet()) {
+                if (entry.getKey().startsWith(levelPrefix)) {
+                    values.put(entry.getKey().substring(levelPrefix.length()), entry.getValue());
+                }
+            }
+            int levelDefault = defaultValue;
+            if (properties.containsKey(level.name())) {
+                try {
+                    levelDefault = Integer.parseInt(properties.get(level.name()).trim());
+                } catch (final NumberFormatException ignored) {
+                }
             }
+            maps[level.ordinal()] = LoggerLevelMap.ofNumbers(levelDefault, values);
         }
-        return NOT_FOUND;
+        return maps;
     }
 
-    private static String getClassNameOnly(final String classNameWithPackage) {
-        final int lastDotPos = classNameWithPackage.lastIndexOf('.');
-        if (lastDotPos == -1) {
-            return classNameWithPackage;
+    private static boolean getBooleanProperty(final String propertyName, final boolean defaultValue) {
+        final String prop = getStringProperty(propertyName);
+        return prop == null ? defaultValue : "true".equalsIgnoreCase(prop);
+    }
+
+    private StackTraceElement determineCaller(final LoggerConfiguration configuration) {
+        final StackTraceElement caller;
+        try {
+            caller = configuration.getCallerResolver().findCaller(mFrameMatcher, configuration.getCallerMaxDepth());
+        } catch (final RuntimeException e) {
+            // a failing custom resolver must not break the log call
+            return NOT_FOUND;
         }
-        return classNameWithPackage.substring(lastDotPos + 1);
+        return caller != null ? caller : NOT_FOUND;
     }
 
     /**
-     * Is the given log level currently enabled?
+     * Is the given log level currently enabled for loggers without a configured level?
      *
      * @param logLevel is this level enabled?
      */
     protected static boolean isLevelEnabled(final LogLevel logLevel) {
+        final LoggerConfiguration configuration = sConfiguration;
         // log level are numerically ordered so can use simple numeric comparison
-        return logLevel.getAndroidLogLevel() >= sLogLevel.getAndroidLogLevel();
+        return logLevel.getAndroidLogLevel() >= Math.max(configuration.getLogLevel().getAndroidLogLevel(),
+            configuration.getLoggableThreshold());
+    }
+
+    /**
+     * Is the given log level currently enabled for this logger?
+     *
+     * @param logLevel is this level enabled?
+     */
+    private boolean isEnabled(final LogLevel logLevel) {
+        return logLevel.getAndroidLogLevel() >= mLevelThreshold;
+    }
+
+    /**
+     * Is the given log level enabled for messages with the given marker? Denied markers disable and allowed
+     * markers enable all levels.
+     *
+     * @param marker the marker, or null
+     */
+    private boolean isLevelEnabled(final LogLevel logLevel, final Marker marker) {
+        if (marker == null || sAllowedMarkers == null && sDeniedMarkers == null) {
+            return isEnabled(logLevel);
+        }
+        if (isDenied(marker)) {
+            return false;
+        }
+        return isEnabled(logLevel)
+            || sAllowedMarkers != null && AndroidMarker.intersects(AndroidMarker.bitsOf(marker), sAllowedMarkers);
     }
 
-    private static LogLevel stringToLevel(final String levelStr) {
+    static LogLevel stringToLevel(final String levelStr) {
         if ("trace".equalsIgnoreCase(levelStr)) {
             return LogLevel.TRACE;
         }
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2013 Philip Schiffer
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package de.psdev.slf4j.android.logger;
+
+import org.slf4j.spi.MDCAdapter;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * {@link MDCAdapter} keeping the context of each thread in an immutable {@link MdcMap} that is replaced on every
+ * change.
+ * <p/>
+ * A change copies only the few entries of the context instead of a {@code HashMap}. Child threads share the
+ * context of their parent until they change it, and {@link AndroidLoggerAdapter} takes the context for an event
+ * without copying it.
+ */
+public class AndroidMDCAdapter implements MDCAdapter {
+
+    private final ThreadLocal<MdcMap> mContext = new InheritableThreadLocal<MdcMap>();
+
+    @Override
+    public void put(final String key, final String value) {
+        if (key == null) {
+            throw new IllegalArgumentException("key cannot be null");
+        }
+        final MdcMap context = mContext.get();
+        mContext.set(context == null ? MdcMap.of(key, value) : context.with(key, value));
+    }
+
+    @Override
+    public String get(final String key) {
+        final MdcMap context = mContext.get();
+        return context != null && key != null ? context.get(key) : null;
+    }
+
+    @Override
+    public void remove(final String key) {
+        final MdcMap context = mContext.get();
+        if (context != null && key != null) {
+            setContext(context.without(key));
+        }
+    }
+
+    @Override
+    public void clear() {
+        mContext.remove();
+    }
+
+    @Override
+    public Map<String, String> getCopyOfContextMap() {
+        final MdcMap context = mContext.get();
+        return context != null ? new HashMap<String, String>(context) : null;
+    }
+
+    @Override
+    public void setContextMap(final Map<String, String> contextMap) {
+        setContext(MdcMap.of(contextMap));
+    }
+
+    /**
+     * @return the immutable context of the current thread, or null if it is empty
+     */
+    Map<String, String> getContextMap() {
+        return mContext.get();
+    }
+
+    private void setContext(final MdcMap context) {
+        if (context != null) {
+            mContext.set(context);
+        } else {
+            mContext.remove();
+        }
+    }
+}
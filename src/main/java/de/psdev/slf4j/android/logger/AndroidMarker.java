@@ -0,0 +1,249 @@
+/*
+ * Copyright 2013 Philip Schiffer
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package de.psdev.slf4j.android.logger;
+
+import org.slf4j.Marker;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link Marker} with a small integer id per name, so testing whether a marker or one of its references is among a
+ * set of markers is a bitset intersection instead of a walk over the references comparing names.
+ * <p/>
+ * The ids of a marker and all markers it references are cached as a bitset. Any change of the references of any
+ * marker invalidates all cached bitsets, as references are expected to be set up once.
+ */
+public final class AndroidMarker implements Marker {
+    private static final long serialVersionUID = 4633129183219212571L;
+
+    private static final ConcurrentMap<String, Integer> IDS = new ConcurrentHashMap<String, Integer>();
+    private static final AtomicInteger NEXT_ID = new AtomicInteger();
+    /**
+     * Incremented on every change of references
+     */
+    private static final AtomicInteger MODIFICATIONS = new AtomicInteger();
+
+    private final String mName;
+    private final List<Marker> mReferences = new CopyOnWriteArrayList<Marker>();
+    private transient volatile Bits mBits;
+
+    AndroidMarker(final String name) {
+        if (name == null) {
+            throw new IllegalArgumentException("A marker name cannot be null");
+        }
+        mName = name;
+    }
+
+    /**
+     * @return the id of the given marker name, assigned on first use
+     */
+    static int idOf(final String name) {
+        final Integer id = IDS.get(name);
+        if (id != null) {
+            return id;
+        }
+        final Integer newId = NEXT_ID.getAndIncrement();
+        final Integer existingId = IDS.putIfAbsent(name, newId);
+        return existingId != null ? existingId : newId;
+    }
+
+    /**
+     * @return the ids of the given marker and all markers it references
+     */
+    static long[] bitsOf(final Marker marker) {
+        if (marker instanceof AndroidMarker) {
+            return ((AndroidMarker) marker).getBits();
+        }
+        return collectBits(marker, new long[1]);
+    }
+
+    /**
+     * @param names comma separated marker names
+     * @return the ids of the named markers, or null if there are none
+     */
+    static long[] bitsOf(final String names) {
+        if (names == null) {
+            return null;
+        }
+        long[] bits = null;
+        for (final String name : names.split(",")) {
+            if (name.trim().length() > 0) {
+                bits = setBit(bits != null ? bits : new long[1], idOf(name.trim()));
+            }
+        }
+        return bits;
+    }
+
+    /**
+     * @return true if both sets have an id in common
+     */
+    static boolean intersects(final long[] bits, final long[] other) {
+        final int length = Math.min(bits.length, other.length);
+        for (int i = 0; i < length; i++) {
+            if ((bits[i] & other[i]) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static long[] setBit(final long[] bits, final int id) {
+        final int word = id >>> 6;
+        final long[] result = word < bits.length ? bits : copyOf(bits, word + 1);
+        result[word] |= 1L << id;
+        return result;
+    }
+
+    private static boolean isSet(final long[] bits, final int id) {
+        final int word = id >>> 6;
+        return word < bits.length && (bits[word] & 1L << id) != 0;
+    }
+
+    private static long[] copyOf(final long[] bits, final int length) {
+        final long[] copy = new long[length];
+        System.arraycopy(bits, 0, copy, 0, bits.length);
+        return copy;
+    }
+
+    private static long[] collectBits(final Marker marker, final long[] bits) {
+        final int id = idOf(marker.getName());
+        if (isSet(bits, id)) {
+            // already visited, references may form a cycle
+            return bits;
+        }
+        long[] result = setBit(bits, id);
+        final Iterator<Marker> references = marker.iterator();
+        while (references.hasNext()) {
+            result = collectBits(references.next(), result);
+        }
+        return result;
+    }
+
+    long[] getBits() {
+        final int modifications = MODIFICATIONS.get();
+        Bits bits = mBits;
+        if (bits == null || bits.mModifications != modifications) {
+            bits = new Bits(modifications, collectBits(this, new long[1]));
+            mBits = bits;
+        }
+        return bits.mWords;
+    }
+
+    @Override
+    public String getName() {
+        return mName;
+    }
+
+    @Override
+    public void add(final Marker reference) {
+        if (reference == null) {
+            throw new IllegalArgumentException("A null value cannot be added to a Marker as reference.");
+        }
+        if (!contains(reference)) {
+            mReferences.add(reference);
+            MODIFICATIONS.incrementAndGet();
+        }
+    }
+
+    @Override
+    public boolean remove(final Marker reference) {
+        final boolean removed = mReferences.remove(reference);
+        if (removed) {
+            MODIFICATIONS.incrementAndGet();
+        }
+        return removed;
+    }
+
+    @Override
+    @Deprecated
+    public boolean hasChildren() {
+        return hasReferences();
+    }
+
+    @Override
+    public boolean hasReferences() {
+        return !mReferences.isEmpty();
+    }
+
+    @Override
+    public Iterator<Marker> iterator() {
+        return mReferences.iterator();
+    }
+
+    @Override
+    public boolean contains(final Marker other) {
+        if (other == null) {
+            throw new IllegalArgumentException("Other cannot be null");
+        }
+        return contains(other.getName());
+    }
+
+    @Override
+    public boolean contains(final String name) {
+        if (name == null) {
+            return false;
+        }
+        // assigns the ids of this marker and its references
+        final long[] bits = getBits();
+        final Integer id = IDS.get(name);
+        return id != null && isSet(bits, id);
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        return this == obj || obj instanceof Marker && mName.equals(((Marker) obj).getName());
+    }
+
+    @Override
+    public int hashCode() {
+        return mName.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        if (mReferences.isEmpty()) {
+            return mName;
+        }
+        final StringBuilder builder = new StringBuilder(mName).append(" [ ");
+        final Iterator<Marker> references = mReferences.iterator();
+        while (references.hasNext()) {
+            builder.append(references.next().getName());
+            if (references.hasNext()) {
+                builder.append(", ");
+            }
+        }
+        return builder.append(" ]").toString();
+    }
+
+    /**
+     * Bitset together with the number of modifications it was computed for
+     */
+    private static final class Bits {
+        final int mModifications;
+        final long[] mWords;
+
+        Bits(final int modifications, final long[] words) {
+            mModifications = modifications;
+            mWords = words;
+        }
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2013 Philip Schiffer
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package de.psdev.slf4j.android.logger;
+
+import org.slf4j.IMarkerFactory;
+import org.slf4j.Marker;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Hands out {@link AndroidMarker}s, which {@link AndroidLoggerAdapter} filters and routes by id.
+ */
+public class AndroidMarkerFactory implements IMarkerFactory {
+
+    private final ConcurrentMap<String, Marker> mMarkers = new ConcurrentHashMap<String, Marker>();
+
+    @Override
+    public Marker getMarker(final String name) {
+        if (name == null) {
+            throw new IllegalArgumentException("Marker name cannot be null");
+        }
+        final Marker marker = mMarkers.get(name);
+        if (marker != null) {
+            return marker;
+        }
+        final Marker newMarker = new AndroidMarker(name);
+        final Marker existingMarker = mMarkers.putIfAbsent(name, newMarker);
+        return existingMarker != null ? existingMarker : newMarker;
+    }
+
+    @Override
+    public boolean exists(final String name) {
+        return name != null && mMarkers.containsKey(name);
+    }
+
+    @Override
+    public boolean detachMarker(final String name) {
+        return name != null && mMarkers.remove(name) != null;
+    }
+
+    @Override
+    public Marker getDetachedMarker(final String name) {
+        return new AndroidMarker(name);
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2013 Philip Schiffer
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package de.psdev.slf4j.android.logger;
+
+/**
+ * How the arguments of a message are protected against changes between the log request and the moment a
+ * {@link LogSink} formats the message on the background thread of the asynchronous dispatch.
+ */
+enum ArgumentSnapshot {
+    /**
+     * Keep the arguments as they are. Cheapest, but an argument changed after the log request is written with
+     * its new value.
+     */
+    NONE,
+    /**
+     * Keep strings, boxed primitives and enums as they are and replace all other arguments with their text.
+     */
+    IMMUTABLE,
+    /**
+     * Format the whole message on the logging thread.
+     */
+    MESSAGE;
+
+    static ArgumentSnapshot fromString(final String value) {
+        if (value != null) {
+            for (final ArgumentSnapshot snapshot : values()) {
+                if (snapshot.name().equalsIgnoreCase(value.trim())) {
+                    return snapshot;
+                }
+            }
+        }
+        return IMMUTABLE;
+    }
+
+    /**
+     * @param argument an argument of a message
+     * @return the given argument, or its text if it may change
+     */
+    Object snapshot(final Object argument) {
+        if (this != IMMUTABLE || isImmutable(argument)) {
+            return argument;
+        }
+        return MessageTemplate.format("{}", argument);
+    }
+
+    /**
+     * @param arguments the arguments of a message, or null
+     * @return the given arguments, or a copy with the arguments that may change replaced by their text
+     */
+    Object[] snapshot(final Object[] arguments) {
+        return snapshot(arguments, arguments != null ? arguments.length : 0);
+    }
+
+    /**
+     * @param arguments the arguments of a message, or null
+     * @param count     the number of arguments to protect, later elements are kept as they are
+     * @return the given arguments, or a copy with the arguments that may change replaced by their text
+     */
+    Object[] snapshot(final Object[] arguments, final int count) {
+        if (this != IMMUTABLE || arguments == null) {
+            return arguments;
+        }
+        Object[] copy = null;
+        for (int i = 0; i < count; i++) {
+            final Object argument = arguments[i];
+            if (!isImmutable(argument)) {
+                if (copy == null) {
+                    // the array may belong to the caller
+                    copy = arguments.clone();
+                }
+                copy[i] = MessageTemplate.format("{}", argument);
+            }
+        }
+        return copy != null ? copy : arguments;
+    }
+
+    static boolean isImmutable(final Object argument) {
+        return argument == null || argument instanceof String || argument instanceof Integer
+            || argument instanceof Long || argument instanceof Boolean || argument instanceof Double
+            || argument instanceof Float || argument instanceof Character || argument instanceof Short
+            || argument instanceof Byte || argument instanceof Enum;
+    }
+}
@@ -0,0 +1,268 @@
+/*
+ * Copyright 2013 Philip Schiffer
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package de.psdev.slf4j.android.logger;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Hands {@link LogEvent}s to a background thread which writes them to logcat, so the logging thread does not
+ * wait for the write to the log device.
+ * <p/>
+ * Events are kept in a bounded lock-free queue drained by a single thread, so the events of each thread are
+ * written in the order they were logged. What happens when the queue is full is decided by the
+ * {@link OverflowPolicy}. Dropped events are counted per level and reported periodically by a synthetic
+ * log line.
+ * <p/>
+ * Events at or above the bypass level skip the queue and are written on the logging thread right away, so
+ * errors do not wait behind a backlog of less important events.
+ */
+final class AsyncLogDispatcher {
+
+    static final int DEFAULT_QUEUE_SIZE = 1024;
+    static final long DEFAULT_DROP_REPORT_INTERVAL = TimeUnit.SECONDS.toMillis(10);
+
+    /**
+     * What to do with an event when the queue is full.
+     */
+    enum OverflowPolicy {
+        /**
+         * Wait until the worker made room for the event. Keeps every event and their order.
+         */
+        BLOCK,
+        /**
+         * Drop the event that does not fit.
+         */
+        DROP_NEWEST,
+        /**
+         * Drop the oldest queued events to make room.
+         */
+        DROP_OLDEST,
+        /**
+         * Drop the event if its level is below the overflow level, otherwise write it on the logging thread.
+         */
+        DROP_BELOW,
+        /**
+         * Write the event on the logging thread, ahead of the queued ones.
+         */
+        SYNC;
+
+        static OverflowPolicy fromString(final String value) {
+            if (value != null) {
+                for (final OverflowPolicy policy : values()) {
+                    if (policy.name().equalsIgnoreCase(value.trim())) {
+                        return policy;
+                    }
+                }
+            }
+            return BLOCK;
+        }
+    }
+
+    private static final String THREAD_NAME = "Slf4jAndroidLogger-Async";
+    /**
+     * Upper bound for the worker's sleep, guards against a missed wake-up
+     */
+    private static final long MAX_PARK_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final long FULL_QUEUE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final BoundedQueue<LogEvent> mQueue;
+    private final OverflowPolicy mOverflowPolicy;
+    private final LogLevel mOverflowLevel;
+    private final long mDropReportInterval;
+    private final int mBypassThreshold;
+    private final LogSink mSink;
+    private final Thread mWorker;
+    private final AtomicLongArray mDropped = new AtomicLongArray(LogLevel.values().length);
+    private volatile boolean mWorkerSleeping;
+    private long mLastDropReport;
+
+    /**
+     * @param queueSize          maximum number of queued events
+     * @param overflowPolicy     what to do with events that do not fit in the queue
+     * @param overflowLevel      level below which events are dropped by {@link OverflowPolicy#DROP_BELOW}
+     * @param dropReportInterval minimum time between two reports of dropped events in milliseconds
+     * @param bypassThreshold    Android priority from which on events are written synchronously, or
+     *                           {@link LoggerLevelMap#OFF}
+     * @param sink               sink for the events
+     */
+    AsyncLogDispatcher(final int queueSize, final OverflowPolicy overflowPolicy, final LogLevel overflowLevel,
+                       final long dropReportInterval, final int bypassThreshold, final LogSink sink) {
+        mQueue = new BoundedQueue<LogEvent>(queueSize);
+        mOverflowPolicy = overflowPolicy;
+        mOverflowLevel = overflowLevel;
+        mDropReportInterval = dropReportInterval;
+        mBypassThreshold = bypassThreshold;
+        mSink = sink;
+        mWorker = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                drainLoop();
+            }
+        }, THREAD_NAME);
+        mWorker.setDaemon(true);
+        mWorker.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+            @Override
+            public void run() {
+                drain();
+                reportDropped(true);
+                mSink.flush();
+            }
+        }, THREAD_NAME + "-Shutdown"));
+    }
+
+    void dispatch(final LogEvent event) {
+        if (isBypassed(event)) {
+            mSink.write(event);
+            return;
+        }
+        if (!mQueue.offer(event) && !handleOverflow(event)) {
+            return;
+        }
+        if (mWorkerSleeping) {
+            LockSupport.unpark(mWorker);
+        }
+    }
+
+    /**
+     * Dispatch an event together with the events that led to it, like the context released by a trigger. The
+     * context is written the same way as the event, so an event that skips the queue does not overtake it.
+     */
+    void dispatch(final LogEvent[] context, final LogEvent event) {
+        if (isBypassed(event)) {
+            for (final LogEvent contextEvent : context) {
+                mSink.write(contextEvent);
+            }
+            mSink.write(event);
+        } else {
+            for (final LogEvent contextEvent : context) {
+                dispatch(contextEvent);
+            }
+            dispatch(event);
+        }
+    }
+
+    /**
+     * @return true if the event is important enough to skip the queue, or logged while writing an event where
+     * queueing could dead lock
+     */
+    private boolean isBypassed(final LogEvent event) {
+        return event.getLevel().getAndroidLogLevel() >= mBypassThreshold || Thread.currentThread() == mWorker;
+    }
+
+    /**
+     * @return true if the event was queued after all
+     */
+    private boolean handleOverflow(final LogEvent event) {
+        switch (mOverflowPolicy) {
+            case DROP_NEWEST:
+                countDropped(event);
+                return false;
+            case DROP_OLDEST:
+                do {
+                    final LogEvent oldest = mQueue.poll();
+                    if (oldest != null) {
+                        countDropped(oldest);
+                    }
+                } while (!mQueue.offer(event));
+                return true;
+            case DROP_BELOW:
+                if (event.getLevel().getAndroidLogLevel() < mOverflowLevel.getAndroidLogLevel()) {
+                    countDropped(event);
+                } else {
+                    mSink.write(event);
+                }
+                return false;
+            case SYNC:
+                mSink.write(event);
+                return false;
+            default:
+                do {
+                    // wait for the worker to make room, writing the event here would overtake the queued ones
+                    LockSupport.unpark(mWorker);
+                    LockSupport.parkNanos(FULL_QUEUE_PARK_NANOS);
+                } while (!mQueue.offer(event));
+                return true;
+        }
+    }
+
+    private void countDropped(final LogEvent event) {
+        mDropped.incrementAndGet(event.getLevel().ordinal());
+    }
+
+    /**
+     * @return number of events of the given level dropped since the last report
+     */
+    long getDroppedCount(final LogLevel level) {
+        return mDropped.get(level.ordinal());
+    }
+
+    private void drainLoop() {
+        while (true) {
+            drain();
+            reportDropped(false);
+            mWorkerSleeping = true;
+            if (mQueue.isEmpty()) {
+                LockSupport.parkNanos(this, MAX_PARK_NANOS);
+            }
+            mWorkerSleeping = false;
+        }
+    }
+
+    /**
+     * Write all queued events. Normally only called by the worker thread.
+     */
+    synchronized void drain() {
+        LogEvent event;
+        while ((event = mQueue.poll()) != null) {
+            try {
+                mSink.write(event);
+            } catch (final RuntimeException ignored) {
+                // a failing event must not stop the worker
+            }
+        }
+    }
+
+    /**
+     * Write a warning with the number of dropped events per level, at most once per report interval.
+     */
+    synchronized void reportDropped(final boolean force) {
+        final long now = System.currentTimeMillis();
+        if (!force && now - mLastDropReport < mDropReportInterval) {
+            return;
+        }
+        StringBuilder message = null;
+        long total = 0;
+        for (final LogLevel level : LogLevel.values()) {
+            final long dropped = mDropped.getAndSet(level.ordinal(), 0);
+            if (dropped > 0) {
+                message = message == null ? new StringBuilder(" (") : message.append(", ");
+                message.append(level.name()).append('=').append(dropped);
+                total += dropped;
+            }
+        }
+        if (message == null) {
+            return;
+        }
+        mLastDropReport = now;
+        message.insert(0, " events dropped, async log queue was full").insert(0, total).append(')');
+        mSink.write(new LogEvent(AsyncLogDispatcher.class.getName(), LogLevel.WARN, message.toString(), null,
+            null, Thread.currentThread(), now, null));
+    }
+}
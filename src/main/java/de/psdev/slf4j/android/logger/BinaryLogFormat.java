@@ -0,0 +1,484 @@
+/*
+ * Copyright 2013 Philip Schiffer
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.psdev.slf4j.android.logger;
+
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact binary encoding of {@link LogEvent}s for persistent sinks.
+ * <p/>
+ * Logger names, message patterns, caller classes and methods, thread names and MDC keys are interned into a
+ * dictionary and referenced by id, arguments are written as raw values. The dictionary is written separately
+ * as a sequence of strings, each new string is appended once before the first event referencing it. Decoding
+ * an event formats the pattern with the arguments again, which gives the same message as logging it.
+ * <p/>
+ * Event layout, with varint (V), zigzag varint (Z) and string reference (R) fields:
+ * <pre>
+ * timestamp V, level byte, logger name R, message pattern R, argument count V, arguments,
+ * caller class R [, caller method R, caller line Z], thread name R, thread id V, thread priority byte,
+ * thread group R, MDC entry count V, MDC entries (key R, value R), stack trace R
+ * </pre>
+ * A string reference is 0 for null, 1 for a string written inline (V length and UTF-8 bytes), or the
+ * dictionary id plus 2. Each argument is a type byte followed by its value.
+ * <p/>
+ * The dictionary is bounded by the number of strings and their size in bytes. Once it is full, the
+ * {@link Encoder} writes all strings inline until the records referencing the dictionary are overwritten, and
+ * then starts a new dictionary, see {@link Encoder#recycle(long, long)}.
+ */
+final class BinaryLogFormat {
+
+    static final int DEFAULT_MAX_DICTIONARY_SIZE = 16384;
+    static final int DEFAULT_MAX_DICTIONARY_BYTES = 256 * 1024;
+
+    /**
+     * Strings longer than this are always written inline
+     */
+    static final int MAX_INTERNED_LENGTH = 512;
+
+    private static final int REF_NULL = 0;
+    private static final int REF_INLINE = 1;
+    private static final int REF_DICTIONARY = 2;
+
+    private static final int ARG_NULL = 0;
+    private static final int ARG_STRING = 1;
+    private static final int ARG_LONG = 2;
+    private static final int ARG_DOUBLE = 3;
+    private static final int ARG_FLOAT = 4;
+    private static final int ARG_BOOLEAN = 5;
+    private static final int ARG_CHAR = 6;
+
+    private BinaryLogFormat() {
+    }
+
+    /**
+     * Parse a dictionary written by an {@link Encoder}. A truncated last entry is ignored.
+     */
+    static List<String> readDictionary(final byte[] bytes, final int length) {
+        final List<String> dictionary = new ArrayList<String>();
+        final ByteReader reader = new ByteReader(bytes, length);
+        while (reader.remaining() > 0) {
+            final String value = reader.readString();
+            if (value == null) {
+                break;
+            }
+            dictionary.add(value);
+        }
+        return dictionary;
+    }
+
+    /**
+     * Encodes events, keeping the dictionary of the strings written so far. Not thread safe.
+     */
+    static final class Encoder {
+
+        private final Map<String, Integer> mDictionary = new HashMap<String, Integer>();
+        private final int mMaxDictionarySize;
+        private final int mMaxDictionaryBytes;
+        private int mDictionaryBytes;
+        private boolean mFull;
+        /**
+         * Head of the ring when the full dictionary stopped being referenced, or -1
+         */
+        private long mRetiredAt = -1;
+
+        /**
+         * @param maxDictionarySize maximum number of interned strings, further strings are written inline
+         */
+        Encoder(final int maxDictionarySize) {
+            this(maxDictionarySize, Integer.MAX_VALUE);
+        }
+
+        /**
+         * @param maxDictionarySize  maximum number of interned strings, further strings are written inline
+         * @param maxDictionaryBytes maximum UTF-8 size of the interned strings
+         */
+        Encoder(final int maxDictionarySize, final int maxDictionaryBytes) {
+            mMaxDictionarySize = maxDictionarySize;
+            mMaxDictionaryBytes = maxDictionaryBytes;
+        }
+
+        /**
+         * Add a string to the dictionary without writing it, e.g. when continuing an existing dictionary.
+         */
+        void define(final String value) {
+            mDictionary.put(value, mDictionary.size());
+            mDictionaryBytes += ByteWriter.utf8Length(value);
+            if (mDictionary.size() >= mMaxDictionarySize || mDictionaryBytes >= mMaxDictionaryBytes) {
+                mFull = true;
+            }
+        }
+
+        /**
+         * Stop referencing the dictionary, e.g. because its new strings could not be stored. All strings are written
+         * inline until {@link #recycle(long, long)} starts a new dictionary.
+         *
+         * @param head position after the newest record in the ring
+         */
+        void retire(final long head) {
+            mFull = true;
+            if (mRetiredAt < 0) {
+                mRetiredAt = head;
+            }
+        }
+
+        /**
+         * Start a new dictionary once the current one is full and no record references it anymore. Call after
+         * each record appended to the ring. When the dictionary is full, all strings are written inline from the
+         * next record on, and the dictionary is cleared as soon as the ring dropped all records written before.
+         *
+         * @param tail position of the oldest record in the ring
+         * @param head position after the newest record in the ring
+         * @return true if the dictionary was cleared, its stored strings have to be discarded
+         */
+        boolean recycle(final long tail, final long head) {
+            if (mRetiredAt < 0) {
+                if (mFull) {
+                    mRetiredAt = head;
+                }
+                return false;
+            }
+            if (tail < mRetiredAt) {
+                return false;
+            }
+            mDictionary.clear();
+            mDictionaryBytes = 0;
+            mFull = false;
+            mRetiredAt = -1;
+            return true;
+        }
+
+        /**
+         * @param event      the event
+         * @param stackTrace stack trace of the throwable of the event, or null
+         * @param out        receives the event
+         * @param dictionary receives the strings added to the dictionary, must be written before the event
+         */
+        void encode(final LogEvent event, final String stackTrace, final ByteWriter out, final ByteWriter dictionary) {
+            out.putVarLong(event.getTimestamp());
+            out.putByte(event.getLevel().ordinal());
+            putInterned(event.getLoggerName(), out, dictionary);
+            putInterned(event.getMessagePattern(), out, dictionary);
+            final int argumentCount = event.getArgumentCount();
+            out.putVarLong(argumentCount);
+            for (int i = 0; i < argumentCount; i++) {
+                putArgument(event.getArgument(i), out);
+            }
+            final StackTraceElement caller = event.getCaller();
+            if (caller != null) {
+                putInterned(caller.getClassName(), out, dictionary);
+                putInterned(caller.getMethodName(), out, dictionary);
+                out.putZigZagLong(caller.getLineNumber());
+            } else {
+                out.putByte(REF_NULL);
+            }
+            putInterned(event.getThreadName(), out, dictionary);
+            out.putVarLong(event.getThreadId());
+            out.putByte(event.getThreadPriority());
+            putInterned(event.getThreadGroupName(), out, dictionary);
+            final Map<String, String> mdc = event.getMdc();
+            if (mdc != null) {
+                out.putVarLong(mdc.size());
+                for (final Map.Entry<String, String> entry : mdc.entrySet()) {
+                    putInterned(entry.getKey(), out, dictionary);
+                    putInline(entry.getValue(), out);
+                }
+            } else {
+                out.putVarLong(0);
+            }
+            putInline(stackTrace, out);
+        }
+
+        /**
+         * Encode a log request without a {@link LogEvent}, caller and MDC. Apart from new dictionary entries
+         * and arguments that are not primitive wrappers or strings, this does not allocate.
+         *
+         * @param arguments     the arguments, or null to use {@code argument1} and {@code argument2}
+         * @param argumentCount number of arguments to encode
+         * @param stackTrace    stack trace of the throwable, or null
+         */
+        void encode(final long timestamp, final LogLevel level, final String loggerName, final String messagePattern,
+                    final Object argument1, final Object argument2, final Object[] arguments, final int argumentCount,
+                    final Thread thread, final String stackTrace, final ByteWriter out, final ByteWriter dictionary) {
+            out.putVarLong(timestamp);
+            out.putByte(level.ordinal());
+            putInterned(loggerName, out, dictionary);
+            putInterned(messagePattern, out, dictionary);
+            out.putVarLong(argumentCount);
+            for (int i = 0; i < argumentCount; i++) {
+                putArgument(arguments != null ? arguments[i] : i == 0 ? argument1 : argument2, out);
+            }
+            out.putByte(REF_NULL);
+            putInterned(thread.getName(), out, dictionary);
+            out.putVarLong(thread.getId());
+            out.putByte(thread.getPriority());
+            final ThreadGroup group = thread.getThreadGroup();
+            putInterned(group != null ? group.getName() : null, out, dictionary);
+            out.putVarLong(0);
+            putInline(stackTrace, out);
+        }
+
+        /**
+         * @return the interned strings, ordered by id
+         */
+        List<String> getDictionary() {
+            final String[] values = new String[mDictionary.size()];
+            for (final Map.Entry<String, Integer> entry : mDictionary.entrySet()) {
+                values[entry.getValue()] = entry.getKey();
+            }
+            return Arrays.asList(values);
+        }
+
+        private void putInterned(final String value, final ByteWriter out, final ByteWriter dictionary) {
+            if (value == null) {
+                out.putByte(REF_NULL);
+                return;
+            }
+            if (mRetiredAt >= 0 || value.length() > MAX_INTERNED_LENGTH) {
+                putInline(value, out);
+                return;
+            }
+            Integer id = mDictionary.get(value);
+            if (id == null) {
+                final int bytes = ByteWriter.utf8Length(value);
+                if (mFull || mDictionary.size() >= mMaxDictionarySize
+                    || mDictionaryBytes + bytes > mMaxDictionaryBytes) {
+                    mFull = true;
+                    putInline(value, out);
+                    return;
+                }
+                id = mDictionary.size();
+                mDictionary.put(value, id);
+                mDictionaryBytes += bytes;
+                dictionary.putString(value);
+            }
+            out.putVarLong(id + REF_DICTIONARY);
+        }
+
+        private static void putInline(final String value, final ByteWriter out) {
+            if (value == null) {
+                out.putByte(REF_NULL);
+            } else {
+                out.putByte(REF_INLINE);
+                out.putString(value);
+            }
+        }
+
+        private static void putArgument(final Object argument, final ByteWriter out) {
+            if (argument == null) {
+                out.putByte(ARG_NULL);
+            } else if (argument instanceof Integer || argument instanceof Long || argument instanceof Short
+                || argument instanceof Byte) {
+                out.putByte(ARG_LONG);
+                out.putZigZagLong(((Number) argument).longValue());
+            } else if (argument instanceof Double) {
+                out.putByte(ARG_DOUBLE);
+                out.putLong(Double.doubleToRawLongBits((Double) argument));
+            } else if (argument instanceof Float) {
+                out.putByte(ARG_FLOAT);
+                out.putInt(Float.floatToRawIntBits((Float) argument));
+            } else if (argument instanceof Boolean) {
+                out.putByte(ARG_BOOLEAN);
+                out.putByte((Boolean) argument ? 1 : 0);
+            } else if (argument instanceof Character) {
+                out.putByte(ARG_CHAR);
+                out.putVarLong((Character) argument);
+            } else {
+                out.putByte(ARG_STRING);
+                // renders arrays and failing toString() like the message formatter does
+                out.putString(argument instanceof String ? (String) argument : MessageTemplate.format("{}", argument));
+            }
+        }
+    }
+
+    /**
+     * Decodes events with the dictionary written by an {@link Encoder}.
+     */
+    static final class Decoder {
+
+        private final List<String> mDictionary;
+
+        Decoder(final List<String> dictionary) {
+            mDictionary = dictionary;
+        }
+
+        /**
+         * @throws IllegalArgumentException if the event is malformed or references unknown strings
+         */
+        LogEvent decode(final byte[] bytes, final int length) {
+            final ByteReader in = new ByteReader(bytes, length);
+            final long timestamp = in.readVarLong();
+            final int level = in.readByte();
+            if (level < 0 || level >= LogLevel.values().length) {
+                throw new IllegalArgumentException("Invalid level " + level);
+            }
+            final String loggerName = readReference(in);
+            final String messagePattern = readReference(in);
+            final int argumentCount = (int) in.readVarLong();
+            final Object[] arguments = argumentCount > 0 ? new Object[argumentCount] : null;
+            for (int i = 0; i < argumentCount; i++) {
+                arguments[i] = readArgument(in);
+            }
+            final String callerClass = readReference(in);
+            StackTraceElement caller = null;
+            if (callerClass != null) {
+                final String callerMethod = readReference(in);
+                caller = new StackTraceElement(callerClass, callerMethod, null, (int) in.readZigZagLong());
+            }
+            final String threadName = readReference(in);
+            final long threadId = in.readVarLong();
+            final int threadPriority = in.readByte();
+            final String threadGroupName = readReference(in);
+            final int mdcSize = (int) in.readVarLong();
+            Map<String, String> mdc = null;
+            if (mdcSize > 0) {
+                mdc = new HashMap<String, String>();
+                for (int i = 0; i < mdcSize; i++) {
+                    mdc.put(readReference(in), readReference(in));
+                }
+            }
+            final String stackTrace = readReference(in);
+            return new LogEvent(loggerName, LogLevel.values()[level], messagePattern, arguments, stackTrace,
+                caller, threadName, threadId, threadPriority, threadGroupName, timestamp, mdc);
+        }
+
+        private String readReference(final ByteReader in) {
+            final long reference = in.readVarLong();
+            if (reference == REF_NULL) {
+                return null;
+            }
+            if (reference == REF_INLINE) {
+                return readString(in);
+            }
+            final long id = reference - REF_DICTIONARY;
+            if (id >= mDictionary.size()) {
+                throw new IllegalArgumentException("Unknown dictionary id " + id);
+            }
+            return mDictionary.get((int) id);
+        }
+
+        private static String readString(final ByteReader in) {
+            final String value = in.readString();
+            if (value == null) {
+                throw new IllegalArgumentException("Truncated string");
+            }
+            return value;
+        }
+
+        private static Object readArgument(final ByteReader in) {
+            final int type = in.readByte();
+            switch (type) {
+                case ARG_NULL:
+                    return null;
+                case ARG_STRING:
+                    return readString(in);
+                case ARG_LONG:
+                    return in.readZigZagLong();
+                case ARG_DOUBLE:
+                    return Double.longBitsToDouble(in.readLong());
+                case ARG_FLOAT:
+                    return Float.intBitsToFloat((int) in.readFixed(4));
+                case ARG_BOOLEAN:
+                    return in.readByte() != 0;
+                case ARG_CHAR:
+                    return (char) in.readVarLong();
+                default:
+                    throw new IllegalArgumentException("Invalid argument type " + type);
+            }
+        }
+    }
+
+    /**
+     * Reads the values written by {@link ByteWriter}.
+     */
+    private static final class ByteReader {
+
+        private final byte[] mBytes;
+        private final int mLength;
+        private int mPosition;
+
+        ByteReader(final byte[] bytes, final int length) {
+            mBytes = bytes;
+            mLength = length;
+        }
+
+        int remaining() {
+            return mLength - mPosition;
+        }
+
+        int readByte() {
+            if (mPosition >= mLength) {
+                throw new IllegalArgumentException("Truncated event");
+            }
+            return mBytes[mPosition++];
+        }
+
+        long readFixed(final int size) {
+            long value = 0;
+            for (int i = 0; i < size; i++) {
+                value = value << 8 | readByte() & 0xFF;
+            }
+            return value;
+        }
+
+        long readLong() {
+            return readFixed(8);
+        }
+
+        long readVarLong() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                final int b = readByte();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("Malformed varint");
+        }
+
+        long readZigZagLong() {
+            final long value = readVarLong();
+            return value >>> 1 ^ -(value & 1);
+        }
+
+        /**
+         * @return the string, or null if it is truncated
+         */
+        String readString() {
+            final int start = mPosition;
+            try {
+                final long length = readVarLong();
+                if (length > mLength - mPosition) {
+                    mPosition = start;
+                    return null;
+                }
+                final String value = new String(mBytes, mPosition, (int) length, "UTF-8");
+                mPosition += (int) length;
+                return value;
+            } catch (final IllegalArgumentException e) {
+                mPosition = start;
+                return null;
+            } catch (final UnsupportedEncodingException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
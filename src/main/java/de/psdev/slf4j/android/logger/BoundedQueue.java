@@ -0,0 +1,116 @@
+/*
+ * Copyright 2013 Philip Schiffer
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package de.psdev.slf4j.android.logger;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded lock-free multi-producer multi-consumer queue backed by a ring buffer.
+ * <p/>
+ * Each slot carries a sequence number telling producers and consumers whether it is free or filled for the
+ * current lap, so offering and polling take a single CAS on the fast path and never block. Elements offered
+ * by one thread are polled in the order they were offered.
+ *
+ * @param <E> type of the elements
+ */
+final class BoundedQueue<E> {
+
+    private final int mMask;
+    private final AtomicReferenceArray<E> mElements;
+    private final AtomicLongArray mSequences;
+    private final AtomicLong mTail = new AtomicLong();
+    private final AtomicLong mHead = new AtomicLong();
+
+    /**
+     * @param capacity minimum capacity, rounded up to the next power of two
+     */
+    BoundedQueue(final int capacity) {
+        int size = 2;
+        while (size < capacity) {
+            size <<= 1;
+        }
+        mMask = size - 1;
+        mElements = new AtomicReferenceArray<E>(size);
+        mSequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            mSequences.set(i, i);
+        }
+    }
+
+    int capacity() {
+        return mMask + 1;
+    }
+
+    /**
+     * @return false if the queue is full
+     */
+    boolean offer(final E element) {
+        long position = mTail.get();
+        int index;
+        while (true) {
+            index = (int) (position & mMask);
+            final long difference = mSequences.get(index) - position;
+            if (difference == 0) {
+                if (mTail.compareAndSet(position, position + 1)) {
+                    break;
+                }
+                position = mTail.get();
+            } else if (difference < 0) {
+                return false;
+            } else {
+                position = mTail.get();
+            }
+        }
+        mElements.set(index, element);
+        // volatile write, consumers waiting for elements check for new ones after announcing that they sleep
+        mSequences.set(index, position + 1);
+        return true;
+    }
+
+    /**
+     * @return the oldest element or null if the queue is empty
+     */
+    E poll() {
+        long position = mHead.get();
+        int index;
+        while (true) {
+            index = (int) (position & mMask);
+            final long difference = mSequences.get(index) - (position + 1);
+            if (difference == 0) {
+                if (mHead.compareAndSet(position, position + 1)) {
+                    break;
+                }
+                position = mHead.get();
+            } else if (difference < 0) {
+                return null;
+            } else {
+                position = mHead.get();
+            }
+        }
+        final E element = mElements.get(index);
+        mElements.lazySet(index, null);
+        mSequences.set(index, position + mMask + 1);
+        return element;
+    }
+
+    boolean isEmpty() {
+        final long position = mHead.get();
+        return mSequences.get((int) (position & mMask)) - (position + 1) < 0;
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright 2013 Philip Schiffer
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.psdev.slf4j.android.logger;
+
+/**
+ * Growable byte array used to encode events without allocating per event. Not thread safe.
+ */
+final class ByteWriter {
+
+    private byte[] mBytes;
+    private int mLength;
+
+    ByteWriter(final int initialCapacity) {
+        mBytes = new byte[initialCapacity];
+    }
+
+    byte[] bytes() {
+        return mBytes;
+    }
+
+    int length() {
+        return mLength;
+    }
+
+    void reset() {
+        mLength = 0;
+    }
+
+    void putByte(final int value) {
+        ensureCapacity(1);
+        mBytes[mLength++] = (byte) value;
+    }
+
+    void putLong(final long value) {
+        ensureCapacity(8);
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            mBytes[mLength++] = (byte) (value >>> shift);
+        }
+    }
+
+    void putInt(final int value) {
+        ensureCapacity(4);
+        for (int shift = 24; shift >= 0; shift -= 8) {
+            mBytes[mLength++] = (byte) (value >>> shift);
+        }
+    }
+
+    /**
+     * Append an unsigned variable length integer, 7 bits per byte with the high bit set on all but the last byte.
+     */
+    void putVarLong(final long value) {
+        ensureCapacity(10);
+        long remaining = value;
+        while ((remaining & ~0x7FL) != 0) {
+            mBytes[mLength++] = (byte) (remaining & 0x7F | 0x80);
+            remaining >>>= 7;
+        }
+        mBytes[mLength++] = (byte) remaining;
+    }
+
+    /**
+     * Append a signed variable length integer, zigzag encoded so small negative values stay short.
+     */
+    void putZigZagLong(final long value) {
+        putVarLong(value << 1 ^ value >> 63);
+    }
+
+    void putBytes(final byte[] bytes, final int offset, final int length) {
+        ensureCapacity(length);
+        System.arraycopy(bytes, offset, mBytes, mLength, length);
+        mLength += length;
+    }
+
+    /**
+     * Append the UTF-8 length of the given string as {@link #putVarLong(long) varint} followed by its UTF-8
+     * encoding.
+     */
+    void putString(final String value) {
+        final int length = utf8Length(value);
+        putVarLong(length);
+        putUtf8(value, length);
+    }
+
+    /**
+     * Append the UTF-8 encoding of the given string, stopping at the last complete character that fits into
+     * {@code maxBytes} bytes.
+     *
+     * @return the number of bytes written
+     */
+    int putUtf8(final String value, final int maxBytes) {
+        final int start = mLength;
+        final int length = value.length();
+        ensureCapacity(Math.min(maxBytes, length * 3));
+        final int limit = maxBytes > Integer.MAX_VALUE - start ? Integer.MAX_VALUE : start + maxBytes;
+        for (int i = 0; i < length; i++) {
+            final char c = value.charAt(i);
+            if (c < 0x80) {
+                if (mLength + 1 > limit) {
+                    break;
+                }
+                mBytes[mLength++] = (byte) c;
+            } else if (c < 0x800) {
+                if (mLength + 2 > limit) {
+                    break;
+                }
+                mBytes[mLength++] = (byte) (0xC0 | c >> 6);
+                mBytes[mLength++] = (byte) (0x80 | c & 0x3F);
+            } else if (Character.isHighSurrogate(c) && i + 1 < length
+                && Character.isLowSurrogate(value.charAt(i + 1))) {
+                if (mLength + 4 > limit) {
+                    break;
+                }
+                final int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                mBytes[mLength++] = (byte) (0xF0 | codePoint >> 18);
+                mBytes[mLength++] = (byte) (0x80 | codePoint >> 12 & 0x3F);
+                mBytes[mLength++] = (byte) (0x80 | codePoint >> 6 & 0x3F);
+                mBytes[mLength++] = (byte) (0x80 | codePoint & 0x3F);
+            } else if (c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE) {
+                if (mLength + 1 > limit) {
+                    break;
+                }
+                // replace lone surrogates like String.getBytes does
+                mBytes[mLength++] = (byte) '?';
+            } else {
+                if (mLength + 3 > limit) {
+                    break;
+                }
+                mBytes[mLength++] = (byte) (0xE0 | c >> 12);
+                mBytes[mLength++] = (byte) (0x80 | c >> 6 & 0x3F);
+                mBytes[mLength++] = (byte) (0x80 | c & 0x3F);
+            }
+        }
+        return mLength - start;
+    }
+
+    /**
+     * @return the number of bytes {@link #putUtf8(String, int)} writes for the given string
+     */
+    static int utf8Length(final String value) {
+        final int length = value.length();
+        int bytes = 0;
+        for (int i = 0; i < length; i++) {
+            final char c = value.charAt(i);
+            if (c < 0x80) {
+                bytes++;
+            } else if (c < 0x800) {
+                bytes += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < length
+                && Character.isLowSurrogate(value.charAt(i + 1))) {
+                bytes += 4;
+                i++;
+            } else if (c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE) {
+                bytes++;
+            } else {
+                bytes += 3;
+            }
+        }
+        return bytes;
+    }
+
+    private void ensureCapacity(final int additional) {
+        if (mLength + additional > mBytes.length) {
+            final byte[] bytes = new byte[Math.max(mBytes.length * 2, mLength + additional)];
+            System.arraycopy(mBytes, 0, bytes, 0, mLength);
+            mBytes = bytes;
+        }
+    }
+}
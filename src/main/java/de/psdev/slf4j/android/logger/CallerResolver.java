@@ -0,0 +1,36 @@
+/*
+ * Copyright 2013 Philip Schiffer
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package de.psdev.slf4j.android.logger;
+
+/**
+ * Strategy used by {@link AndroidLoggerAdapter} to find the stack frame of the code that issued a log call.
+ * <p/>
+ * Implementations must be thread safe and provide a public no-arg constructor if they are configured
+ * by class name through {@link AndroidLoggerAdapter#CALLER_RESOLVER_KEY}. An exception thrown by
+ * {@link #findCaller(FrameMatcher, int)} is treated like a caller that was not found.
+ */
+public interface CallerResolver {
+
+    /**
+     * Find the first frame of the current thread's stack whose class is accepted by the given matcher.
+     *
+     * @param frameMatcher matcher for the class name of the caller
+     * @param maxDepth     maximum number of frames to inspect before giving up
+     * @return the matching frame or {@code null} if no frame matched within {@code maxDepth} frames
+     */
+    StackTraceElement findCaller(FrameMatcher frameMatcher, int maxDepth);
+}
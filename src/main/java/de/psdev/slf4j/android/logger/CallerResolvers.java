@@ -0,0 +1,56 @@
+/*
+ * Copyright 2013 Philip Schiffer
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package de.psdev.slf4j.android.logger;
+
+/**
+ * Creates the {@link CallerResolver} configured through {@link AndroidLoggerAdapter#CALLER_RESOLVER_KEY}.
+ */
+final class CallerResolvers {
+
+    static final String AUTO = "auto";
+    static final String STACK_WALKER = "stackwalker";
+    static final String THROWABLE = "throwable";
+
+    private CallerResolvers() {
+    }
+
+    /**
+     * @param type {@code auto}, {@code stackwalker}, {@code throwable} or the fully qualified name of a
+     *             {@link CallerResolver} implementation. Unknown or unusable values fall back to {@code auto}.
+     */
+    static CallerResolver create(final String type) {
+        if (type == null || AUTO.equalsIgnoreCase(type) || STACK_WALKER.equalsIgnoreCase(type)) {
+            // stackwalker is only honored where the runtime provides it
+            return createDefault();
+        }
+        if (THROWABLE.equalsIgnoreCase(type)) {
+            return new ThrowableCallerResolver();
+        }
+        try {
+            return (CallerResolver) Class.forName(type).newInstance();
+        } catch (final Exception ignored) {
+            return createDefault();
+        }
+    }
+
+    private static CallerResolver createDefault() {
+        if (StackWalkerCallerResolver.isSupported()) {
+            return new StackWalkerCallerResolver();
+        }
+        return new ThrowableCallerResolver();
+    }
+}
@@ -0,0 +1,222 @@
+/*
+ * Copyright 2013 Philip Schiffer
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package de.psdev.slf4j.android.logger;
+
+import org.slf4j.Marker;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Collapses consecutive identical events of a logger into the first one and a summary with the number of
+ * repetitions, written when a different event of the logger arrives or the repetitions stop for the timeout.
+ * <p/>
+ * Events are identical if they have the same level, marker, message pattern, arguments, caller and type and
+ * message of the throwable. Events without caller are compared by their logger and message pattern alone.
+ * Immutable arguments are compared as they are, without formatting the message. If an argument may change after
+ * the event was written, as on the logging thread, the message of the first event is formatted when it is written
+ * and compared instead.
+ */
+final class CollapsingLogSink implements LogSink {
+
+    static final long DEFAULT_TIMEOUT = 5000;
+
+    private final LogSink mSink;
+    private final long mTimeout;
+    private final Map<String, Run> mRuns = new HashMap<String, Run>();
+
+    /**
+     * @param sink    receives the first event of a run and the summary
+     * @param timeout time in milliseconds after the last repetition the summary is written at the latest
+     */
+    CollapsingLogSink(final LogSink sink, final long timeout) {
+        mSink = sink;
+        mTimeout = timeout;
+    }
+
+    @Override
+    public void write(final LogEvent event) {
+        final LogEvent summary;
+        synchronized (this) {
+            Run run = mRuns.get(event.getLoggerName());
+            if (run == null) {
+                run = new Run();
+                mRuns.put(event.getLoggerName(), run);
+            } else if (run.matches(event)) {
+                run.repeat(event);
+                return;
+            }
+            summary = run.start(event);
+        }
+        if (summary != null) {
+            mSink.write(summary);
+        }
+        mSink.write(event);
+    }
+
+    @Override
+    public void flush() {
+        writeSummaries(Long.MAX_VALUE);
+        mSink.flush();
+    }
+
+    /**
+     * Write the summaries of the runs without repetition for the timeout.
+     */
+    void flushExpired() {
+        writeSummaries(System.currentTimeMillis() - mTimeout);
+    }
+
+    private void writeSummaries(final long lastRepetitionBefore) {
+        List<LogEvent> summaries = null;
+        synchronized (this) {
+            for (final Run run : mRuns.values()) {
+                if (run.mRepetitions > 0 && run.mLastTimestamp <= lastRepetitionBefore) {
+                    if (summaries == null) {
+                        summaries = new ArrayList<LogEvent>();
+                    }
+                    summaries.add(run.summarize());
+                }
+            }
+        }
+        if (summaries != null) {
+            for (final LogEvent summary : summaries) {
+                mSink.write(summary);
+            }
+        }
+    }
+
+    /**
+     * The last distinct event of a logger and how often it was repeated since.
+     */
+    private static final class Run {
+        private static final Object[] NO_ARGUMENTS = new Object[0];
+
+        // The first event of the run
+        private LogLevel mLevel;
+        private Marker mMarker;
+        private String mMessagePattern;
+        private int mArgumentCount;
+        /**
+         * The arguments if all of them are immutable, otherwise null and the formatted message is kept
+         */
+        private Object[] mArguments;
+        private String mMessage;
+        private StackTraceElement mCaller;
+        private Throwable mThrowable;
+        /**
+         * The last repetition, only used for its logger, level, marker, caller, thread and timestamp
+         */
+        private LogEvent mLastEvent;
+        private int mRepetitions;
+        private long mLastTimestamp;
+
+        boolean matches(final LogEvent event) {
+            // patterns are usually constants, so the identity check in equal decides most comparisons
+            return mLevel == event.getLevel()
+                && equal(mMessagePattern, event.getMessagePattern())
+                && equal(mCaller, event.getCaller())
+                && equal(mMarker, event.getMarker())
+                && sameThrowable(mThrowable, event.getThrowable())
+                && sameArguments(event);
+        }
+
+        private boolean sameArguments(final LogEvent event) {
+            if (mArgumentCount != event.getArgumentCount()) {
+                return false;
+            }
+            if (mArguments == null) {
+                // an argument may have changed since the first event was written, only the message tells
+                return mMessage.equals(event.getMessage());
+            }
+            for (int i = 0; i < mArgumentCount; i++) {
+                if (!equal(mArguments[i], event.getArgument(i))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        void repeat(final LogEvent event) {
+            mRepetitions++;
+            mLastEvent = event;
+            mLastTimestamp = event.getTimestamp();
+        }
+
+        /**
+         * Start a new run with the given event.
+         *
+         * @return the summary of the previous run, or null if it had no repetitions
+         */
+        LogEvent start(final LogEvent event) {
+            final LogEvent summary = mRepetitions > 0 ? summarize() : null;
+            mLevel = event.getLevel();
+            mMarker = event.getMarker();
+            mMessagePattern = event.getMessagePattern();
+            mArgumentCount = event.getArgumentCount();
+            mArguments = immutableArguments(event);
+            mMessage = mArguments == null ? event.getMessage() : null;
+            mCaller = event.getCaller();
+            mThrowable = event.getThrowable();
+            return summary;
+        }
+
+        /**
+         * @return a copy of the arguments, or null if one of them may change after write returns
+         */
+        private static Object[] immutableArguments(final LogEvent event) {
+            final int argumentCount = event.getArgumentCount();
+            if (argumentCount == 0) {
+                return NO_ARGUMENTS;
+            }
+            final Object[] arguments = new Object[argumentCount];
+            for (int i = 0; i < argumentCount; i++) {
+                final Object argument = event.getArgument(i);
+                if (!ArgumentSnapshot.isImmutable(argument)) {
+                    return null;
+                }
+                arguments[i] = argument;
+            }
+            return arguments;
+        }
+
+        /**
+         * @return the summary of the repetitions, which are reset
+         */
+        LogEvent summarize() {
+            final LogEvent summary = mLastEvent.withMessage(
+                "Last message repeated " + mRepetitions + (mRepetitions == 1 ? " time" : " times"));
+            mRepetitions = 0;
+            mLastEvent = null;
+            return summary;
+        }
+
+        private static boolean equal(final Object a, final Object b) {
+            return a == b || a != null && a.equals(b);
+        }
+
+        private static boolean sameThrowable(final Throwable a, final Throwable b) {
+            if (a == null || b == null) {
+                return a == b;
+            }
+            return a.getClass() == b.getClass() && equal(a.getMessage(), b.getMessage());
+        }
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2013 Philip Schiffer
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.psdev.slf4j.android.logger;
+
+/**
+ * Writes each event to all sinks whose minimum level it reaches and whose marker filter accepts it.
+ * <p/>
+ * The log line is cached on the event, so it is rendered at most once for all sinks. A failing sink does not
+ * keep the event from the other sinks.
+ */
+final class CompositeLogSink implements LogSink {
+
+    private final LogSink[] mSinks;
+    private final int[] mThresholds;
+    private final long[][] mMarkers;
+    private final long[][] mExcludedMarkers;
+
+    /**
+     * @param sinks      the sinks
+     * @param thresholds minimum Android priority of each sink, or {@link LoggerLevelMap#OFF}
+     */
+    CompositeLogSink(final LogSink[] sinks, final int[] thresholds) {
+        this(sinks, thresholds, new long[sinks.length][], new long[sinks.length][]);
+    }
+
+    /**
+     * @param sinks           the sinks
+     * @param thresholds      minimum Android priority of each sink, or {@link LoggerLevelMap#OFF}
+     * @param markers         ids of the markers of which each sink requires one, null elements accept all events
+     * @param excludedMarkers ids of the markers each sink rejects, null elements reject none
+     * @see AndroidMarker
+     */
+    CompositeLogSink(final LogSink[] sinks, final int[] thresholds, final long[][] markers,
+                     final long[][] excludedMarkers) {
+        mSinks = sinks;
+        mThresholds = thresholds;
+        mMarkers = markers;
+        mExcludedMarkers = excludedMarkers;
+    }
+
+    @Override
+    public void write(final LogEvent event) {
+        final int priority = event.getLevel().getAndroidLogLevel();
+        for (int i = 0; i < mSinks.length; i++) {
+            if (priority >= mThresholds[i] && accepts(i, event)) {
+                try {
+                    mSinks[i].write(event);
+                } catch (final RuntimeException ignored) {
+                    // a failing sink must not affect the others
+                }
+            }
+        }
+    }
+
+    private boolean accepts(final int index, final LogEvent event) {
+        final long[] markers = mMarkers[index];
+        final long[] excludedMarkers = mExcludedMarkers[index];
+        if (markers == null && excludedMarkers == null) {
+            return true;
+        }
+        final long[] bits = event.getMarkerBits();
+        if (bits == null) {
+            return markers == null;
+        }
+        return (markers == null || AndroidMarker.intersects(bits, markers))
+            && (excludedMarkers == null || !AndroidMarker.intersects(bits, excludedMarkers));
+    }
+
+    @Override
+    public void flush() {
+        for (final LogSink sink : mSinks) {
+            try {
+                sink.flush();
+            } catch (final RuntimeException ignored) {
+                // a failing sink must not affect the others
+            }
+        }
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2013 Philip Schiffer
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package de.psdev.slf4j.android.logger;
+
+import java.io.File;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Polls a configuration file on a background thread and notifies a listener when it was changed, created or
+ * deleted. Polling only looks at the modification time and the size of the file, so it is cheap enough to run
+ * every few seconds on a device, where no file system notifications are available on all API levels.
+ */
+final class ConfigurationWatcher implements Runnable {
+
+    static final long DEFAULT_INTERVAL = TimeUnit.SECONDS.toMillis(10);
+
+    private final File mFile;
+    private final Runnable mListener;
+    private long mLastModified;
+    private long mLength;
+
+    /**
+     * @param file     the file to watch, it does not need to exist
+     * @param listener called on the watcher thread after the file changed
+     */
+    ConfigurationWatcher(final File file, final Runnable listener) {
+        mFile = file;
+        mListener = listener;
+        mLastModified = file.lastModified();
+        mLength = file.length();
+    }
+
+    /**
+     * Start polling the file in the given interval on the given executor.
+     */
+    void start(final ScheduledExecutorService executor, final long intervalMillis) {
+        executor.scheduleWithFixedDelay(this, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void run() {
+        final long lastModified = mFile.lastModified();
+        final long length = mFile.length();
+        if (lastModified != mLastModified || length != mLength) {
+            mLastModified = lastModified;
+            mLength = length;
+            try {
+                mListener.run();
+            } catch (final RuntimeException ignored) {
+                // keep watching, a later change may fix the file
+            }
+        }
+    }
+}
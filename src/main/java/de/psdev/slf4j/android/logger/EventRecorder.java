@@ -0,0 +1,173 @@
+/*
+ * Copyright 2013 Philip Schiffer
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.psdev.slf4j.android.logger;
+
+import android.util.Log;
+
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Keeps the most recent log requests at or above its own level in a ring outside of the Java heap, whether
+ * or not they are written to the sinks, so they can be added to crash reports.
+ * <p/>
+ * Requests are encoded with {@link BinaryLogFormat} straight from the arguments of the log call, without
+ * formatting the message, determining the caller or creating an event. Apart from new dictionary entries,
+ * stack traces and arguments that are not primitive wrappers or strings, recording does not allocate.
+ * <p/>
+ * The ring is split into stripes, each with its own dictionary and lock, and every thread records into the stripe
+ * picked by its id, so threads on different stripes never wait for each other. The stripes are merged by time
+ * when they are dumped.
+ * <p/>
+ * The dictionaries of all stripes together hold at most {@link #MAX_DICTIONARY_BYTES} of UTF-8 encoded strings on
+ * the Java heap. A full dictionary is replaced by a new one once its stripe overwrote all records referencing it,
+ * until then strings are recorded inline.
+ */
+final class EventRecorder {
+
+    static final int DEFAULT_SIZE = 0;
+    static final int MIN_SIZE = 1024;
+    static final int MAX_DICTIONARY_BYTES = 64 * 1024;
+
+    /**
+     * Smallest stripe worth splitting off, so stack traces still fit into a record
+     */
+    private static final int MIN_STRIPE_SIZE = 16 * 1024;
+    private static final int MAX_STRIPES = 8;
+
+    private final Stripe[] mStripes;
+    private final int mStripeMask;
+    private final int mThreshold;
+
+    /**
+     * @param size      size of the ring in bytes
+     * @param threshold Android priority from which on requests are recorded
+     */
+    EventRecorder(final int size, final int threshold) {
+        final int processors = Runtime.getRuntime().availableProcessors();
+        int stripes = 1;
+        while (stripes < processors && stripes < MAX_STRIPES && size / (stripes * 2) >= MIN_STRIPE_SIZE) {
+            stripes <<= 1;
+        }
+        mStripes = new Stripe[stripes];
+        for (int i = 0; i < stripes; i++) {
+            mStripes[i] = new Stripe(Math.max(size / stripes, MIN_SIZE),
+                BinaryLogFormat.DEFAULT_MAX_DICTIONARY_SIZE / stripes, MAX_DICTIONARY_BYTES / stripes);
+        }
+        mStripeMask = stripes - 1;
+        mThreshold = threshold;
+    }
+
+    boolean isRecorded(final LogLevel level) {
+        return level.getAndroidLogLevel() >= mThreshold;
+    }
+
+    /**
+     * Record a log request if its level is high enough.
+     *
+     * @param arguments     the arguments, or null to use {@code argument1} and {@code argument2}
+     * @param argumentCount number of arguments without the throwable
+     */
+    void record(final String loggerName, final LogLevel level, final String messagePattern, final Object argument1,
+                final Object argument2, final Object[] arguments, final int argumentCount, final Throwable throwable) {
+        if (level.getAndroidLogLevel() < mThreshold) {
+            return;
+        }
+        final long timestamp = System.currentTimeMillis();
+        final Thread thread = Thread.currentThread();
+        final String stackTrace = throwable != null ? Log.getStackTraceString(throwable) : null;
+        mStripes[(int) thread.getId() & mStripeMask].record(timestamp, level, loggerName, messagePattern, argument1,
+            argument2, arguments, argumentCount, thread, stackTrace);
+    }
+
+    /**
+     * Write the recorded requests from the oldest to the newest, one per line prefixed with date and level.
+     */
+    void dump(final PatternLayout layout, final PatternLayout layoutWithoutCaller, final Appendable out)
+        throws IOException {
+        final List<LogEvent> events = new ArrayList<LogEvent>();
+        for (final Stripe stripe : mStripes) {
+            final BinaryLogFormat.Decoder decoder;
+            final RingBuffer copy;
+            synchronized (stripe) {
+                decoder = new BinaryLogFormat.Decoder(stripe.mEncoder.getDictionary());
+                copy = stripe.mRing.copy();
+            }
+            for (final byte[] record : copy.readRecords()) {
+                try {
+                    events.add(decoder.decode(record, record.length));
+                } catch (final IllegalArgumentException e) {
+                    out.append("Could not decode event: ").append(e.getMessage()).append('\n');
+                }
+            }
+        }
+        // stable, so the events of each stripe keep their order
+        Collections.sort(events, new Comparator<LogEvent>() {
+            @Override
+            public int compare(final LogEvent first, final LogEvent second) {
+                return first.getTimestamp() < second.getTimestamp() ? -1
+                    : first.getTimestamp() == second.getTimestamp() ? 0 : 1;
+            }
+        });
+        final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS", Locale.US);
+        for (final LogEvent event : events) {
+            MappedLogReader.writeEvent(event, layout, layoutWithoutCaller, dateFormat, out);
+        }
+    }
+
+    /**
+     * Part of the ring with its own dictionary, guarded by its own monitor.
+     */
+    private static final class Stripe {
+        final RingBuffer mRing;
+        final BinaryLogFormat.Encoder mEncoder;
+        private final ByteWriter mWriter = new ByteWriter(256);
+        private final ByteWriter mDictionaryWriter = new ByteWriter(256);
+
+        Stripe(final int size, final int maxDictionarySize, final int maxDictionaryBytes) {
+            mRing = RingBuffer.allocateDirect(size, MappedFileSink.FORMAT_BINARY);
+            mEncoder = new BinaryLogFormat.Encoder(maxDictionarySize, maxDictionaryBytes);
+        }
+
+        synchronized void record(final long timestamp, final LogLevel level, final String loggerName,
+                                 final String messagePattern, final Object argument1, final Object argument2,
+                                 final Object[] arguments, final int argumentCount, final Thread thread,
+                                 final String stackTrace) {
+            mWriter.reset();
+            mDictionaryWriter.reset();
+            mEncoder.encode(timestamp, level, loggerName, messagePattern, argument1, argument2, arguments,
+                argumentCount, thread, stackTrace, mWriter, mDictionaryWriter);
+            if (mWriter.length() > mRing.maxRecordLength()) {
+                // keep the beginning of the message pattern instead of the arguments and the stack trace
+                final int maxLength = mRing.maxRecordLength() / 4;
+                final String truncated = messagePattern != null && messagePattern.length() > maxLength
+                    ? messagePattern.substring(0, maxLength) : messagePattern;
+                mWriter.reset();
+                mEncoder.encode(timestamp, level, loggerName, truncated, null, null, null, 0, thread, null, mWriter,
+                    mDictionaryWriter);
+            }
+            if (mWriter.length() <= mRing.maxRecordLength()) {
+                mRing.append(mWriter.bytes(), mWriter.length());
+            }
+            mEncoder.recycle(mRing.getTail(), mRing.getHead());
+        }
+    }
+}
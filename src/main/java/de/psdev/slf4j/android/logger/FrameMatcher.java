@@ -0,0 +1,48 @@
+/*
+ * Copyright 2013 Philip Schiffer
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package de.psdev.slf4j.android.logger;
+
+/**
+ * Matches the class names of stack frames against the name of a logger.
+ * <p/>
+ * A frame matches if its class is the class the logger is named after or one of its inner or anonymous
+ * classes ({@code Name$Inner}, {@code Name$1}). Matching uses plain string comparisons and does not allocate.
+ */
+public final class FrameMatcher {
+
+    private final String mClassName;
+    private final int mLength;
+
+    public FrameMatcher(final String className) {
+        mClassName = className;
+        mLength = className.length();
+    }
+
+    /**
+     * @param frameClassName class name of a stack frame
+     * @return true if the frame belongs to the class this matcher was created for
+     */
+    public boolean matches(final String frameClassName) {
+        return frameClassName.startsWith(mClassName)
+            && (frameClassName.length() == mLength || frameClassName.charAt(mLength) == '$');
+    }
+
+    @Override
+    public String toString() {
+        return "FrameMatcher{" + mClassName + "}";
+    }
+}
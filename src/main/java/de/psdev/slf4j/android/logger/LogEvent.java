@@ -0,0 +1,327 @@
+/*
+ * Copyright 2013 Philip Schiffer
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package de.psdev.slf4j.android.logger;
+
+import org.slf4j.Marker;
+
+import java.util.Map;
+
+/**
+ * A single log request, with everything that has to be determined on the thread that issued it.
+ * <p/>
+ * The message is only formatted from its pattern and arguments when a {@link LogSink} asks for it, so sinks that
+ * store the arguments themselves never build the text. The message and the log line rendered with the configured
+ * layout are cached, so they are built only once no matter how many sinks write the event. Name, id, priority and
+ * group of the logging thread are taken when the event is created, as the thread may change or end before the
+ * event is written.
+ */
+public final class LogEvent {
+
+    private final String mLoggerName;
+    private final LogLevel mLevel;
+    private final Marker mMarker;
+    private long[] mMarkerBits;
+    private final String mMessagePattern;
+    // One or two arguments are kept without array, see getArgument
+    private final Object mArgument1;
+    private final Object mArgument2;
+    private Object[] mArguments;
+    private final int mArgumentCount;
+    private String mMessage;
+    private final Throwable mThrowable;
+    private final StackTraceElement mCaller;
+    private final String mThreadName;
+    private final long mThreadId;
+    private final int mThreadPriority;
+    private final String mThreadGroupName;
+    private final long mTimestamp;
+    private final Map<String, String> mMdc;
+    private String mRenderedMessage;
+    // Only set for events decoded from a file
+    private final String mStackTrace;
+
+    /**
+     * Event for a message without arguments.
+     *
+     * @param caller the caller, or null if it was not determined
+     * @param mdc    copy or immutable snapshot of the MDC, or null if it is not needed
+     */
+    LogEvent(final String loggerName, final LogLevel level, final String message, final Throwable throwable,
+             final StackTraceElement caller, final Thread thread, final long timestamp,
+             final Map<String, String> mdc) {
+        this(loggerName, level, message, null, throwable, caller, thread, timestamp, mdc);
+    }
+
+    /**
+     * Event without marker.
+     *
+     * @param messagePattern the message pattern, or the message if it has no arguments
+     * @param arguments      the arguments without the throwable, or null if there are none
+     * @param caller         the caller, or null if it was not determined
+     * @param mdc            copy or immutable snapshot of the MDC, or null if it is not needed
+     */
+    LogEvent(final String loggerName, final LogLevel level, final String messagePattern, final Object[] arguments,
+             final Throwable throwable, final StackTraceElement caller, final Thread thread, final long timestamp,
+             final Map<String, String> mdc) {
+        this(loggerName, level, null, messagePattern, arguments, throwable, caller, thread, timestamp, mdc);
+    }
+
+    /**
+     * @param marker         the marker, or null
+     * @param messagePattern the message pattern, or the message if it has no arguments
+     * @param arguments      the arguments without the throwable, or null if there are none
+     * @param caller         the caller, or null if it was not determined
+     * @param mdc            copy or immutable snapshot of the MDC, or null if it is not needed
+     */
+    LogEvent(final String loggerName, final LogLevel level, final Marker marker, final String messagePattern,
+             final Object[] arguments, final Throwable throwable, final StackTraceElement caller, final Thread thread,
+             final long timestamp, final Map<String, String> mdc) {
+        this(loggerName, level, marker, messagePattern, null, null, arguments, arguments != null ? arguments.length : 0,
+            throwable, caller, thread, timestamp, mdc);
+    }
+
+    /**
+     * Event with its arguments passed as on the logger, without creating an array for one or two arguments.
+     *
+     * @param marker         the marker, or null
+     * @param messagePattern the message pattern, or the message if it has no arguments
+     * @param argument1      the first argument if {@code arguments} is null
+     * @param argument2      the second argument if {@code arguments} is null
+     * @param arguments      all arguments, or null if they are passed as {@code argument1} and {@code argument2}
+     * @param argumentCount  the number of arguments without the throwable, the array may be longer
+     * @param caller         the caller, or null if it was not determined
+     * @param thread         the logging thread
+     * @param mdc            copy or immutable snapshot of the MDC, or null if it is not needed
+     */
+    LogEvent(final String loggerName, final LogLevel level, final Marker marker, final String messagePattern,
+             final Object argument1, final Object argument2, final Object[] arguments, final int argumentCount,
+             final Throwable throwable, final StackTraceElement caller, final Thread thread, final long timestamp,
+             final Map<String, String> mdc) {
+        this(loggerName, level, marker, messagePattern, argument1, argument2, arguments, argumentCount, throwable,
+            null, caller, thread.getName(), thread.getId(), thread.getPriority(), getThreadGroupName(thread),
+            timestamp, mdc);
+    }
+
+    /**
+     * Event decoded from a file, without the {@link Thread} and {@link Throwable} objects.
+     *
+     * @param stackTrace the stack trace of the throwable, or null if there was none
+     */
+    LogEvent(final String loggerName, final LogLevel level, final String messagePattern, final Object[] arguments,
+             final String stackTrace, final StackTraceElement caller, final String threadName, final long threadId,
+             final int threadPriority, final String threadGroupName, final long timestamp,
+             final Map<String, String> mdc) {
+        this(loggerName, level, null, messagePattern, null, null, arguments, arguments != null ? arguments.length : 0,
+            null, stackTrace, caller, threadName, threadId, threadPriority, threadGroupName, timestamp, mdc);
+    }
+
+    private LogEvent(final String loggerName, final LogLevel level, final Marker marker, final String messagePattern,
+                     final Object argument1, final Object argument2, final Object[] arguments,
+                     final int argumentCount, final Throwable throwable, final String stackTrace,
+                     final StackTraceElement caller, final String threadName, final long threadId,
+                     final int threadPriority, final String threadGroupName, final long timestamp,
+                     final Map<String, String> mdc) {
+        mLoggerName = loggerName;
+        mLevel = level;
+        mMarker = marker;
+        mMessagePattern = messagePattern;
+        mArgument1 = argument1;
+        mArgument2 = argument2;
+        mArguments = arguments;
+        mArgumentCount = argumentCount;
+        mThrowable = throwable;
+        mStackTrace = stackTrace;
+        mCaller = caller;
+        mThreadName = threadName;
+        mThreadId = threadId;
+        mThreadPriority = threadPriority;
+        mThreadGroupName = threadGroupName;
+        mTimestamp = timestamp;
+        mMdc = mdc;
+    }
+
+    /**
+     * @return an event of the same logger, level, marker, caller, thread and time with the given message, without
+     * arguments, throwable and MDC
+     */
+    LogEvent withMessage(final String message) {
+        return new LogEvent(mLoggerName, mLevel, mMarker, message, null, null, null, 0, null, null, mCaller,
+            mThreadName, mThreadId, mThreadPriority, mThreadGroupName, mTimestamp, null);
+    }
+
+    private static String getThreadGroupName(final Thread thread) {
+        final ThreadGroup group = thread.getThreadGroup();
+        // null if the thread has terminated
+        return group != null ? group.getName() : null;
+    }
+
+    public String getLoggerName() {
+        return mLoggerName;
+    }
+
+    public LogLevel getLevel() {
+        return mLevel;
+    }
+
+    /**
+     * @return the marker of the log request, or null
+     */
+    public Marker getMarker() {
+        return mMarker;
+    }
+
+    /**
+     * @return the ids of the marker and the markers it references, see {@link AndroidMarker}, or null if the event
+     * has no marker
+     */
+    long[] getMarkerBits() {
+        if (mMarker != null && mMarkerBits == null) {
+            mMarkerBits = AndroidMarker.bitsOf(mMarker);
+        }
+        return mMarkerBits;
+    }
+
+    /**
+     * @return the message pattern, or the message if it has no arguments
+     */
+    public String getMessagePattern() {
+        return mMessagePattern;
+    }
+
+    /**
+     * @return the arguments of the message pattern without the throwable, or null if there are none. The array is
+     * created on first use if the event was logged with one or two arguments.
+     */
+    public Object[] getArguments() {
+        if (mArgumentCount == 0) {
+            return mArguments;
+        }
+        Object[] arguments = mArguments;
+        if (arguments == null || arguments.length != mArgumentCount) {
+            arguments = new Object[mArgumentCount];
+            for (int i = 0; i < arguments.length; i++) {
+                arguments[i] = getArgument(i);
+            }
+            // a race only creates the same array twice
+            mArguments = arguments;
+        }
+        return arguments;
+    }
+
+    /**
+     * @return the number of arguments of the message pattern without the throwable
+     */
+    int getArgumentCount() {
+        return mArgumentCount;
+    }
+
+    /**
+     * @param index the index of the argument, less than {@link #getArgumentCount()}
+     */
+    Object getArgument(final int index) {
+        if (mArguments != null) {
+            return mArguments[index];
+        }
+        return index == 0 ? mArgument1 : mArgument2;
+    }
+
+    /**
+     * @return the message with its arguments filled in, formatted on first use
+     */
+    public String getMessage() {
+        if (mArgumentCount == 0 && mArguments == null) {
+            return mMessagePattern;
+        }
+        if (mMessage == null) {
+            // a race only formats the same message twice
+            if (mArguments != null) {
+                mMessage = MessageTemplate.format(mMessagePattern, mArguments, mArgumentCount);
+            } else if (mArgumentCount == 1) {
+                mMessage = MessageTemplate.format(mMessagePattern, mArgument1);
+            } else {
+                mMessage = MessageTemplate.format(mMessagePattern, mArgument1, mArgument2);
+            }
+        }
+        return mMessage;
+    }
+
+    public Throwable getThrowable() {
+        return mThrowable;
+    }
+
+    /**
+     * @return the caller, or null if it was not determined
+     */
+    public StackTraceElement getCaller() {
+        return mCaller;
+    }
+
+    public String getThreadName() {
+        return mThreadName;
+    }
+
+    public long getThreadId() {
+        return mThreadId;
+    }
+
+    public int getThreadPriority() {
+        return mThreadPriority;
+    }
+
+    /**
+     * @return the name of the thread group of the logging thread, or null if it had terminated
+     */
+    public String getThreadGroupName() {
+        return mThreadGroupName;
+    }
+
+    public long getTimestamp() {
+        return mTimestamp;
+    }
+
+    /**
+     * @return the value of the given MDC key at the time of the log request
+     */
+    public String getMdcValue(final String key) {
+        return mMdc != null ? mMdc.get(key) : null;
+    }
+
+    /**
+     * @return the MDC at the time of the log request, or null if it was empty or not taken
+     */
+    Map<String, String> getMdc() {
+        return mMdc;
+    }
+
+    /**
+     * @return the stack trace of an event decoded from a file, or null
+     */
+    String getDecodedStackTrace() {
+        return mStackTrace;
+    }
+
+    /**
+     * @return the log line rendered with the configured layout
+     */
+    public String getRenderedMessage() {
+        if (mRenderedMessage == null) {
+            // a race only renders the same line twice
+            mRenderedMessage = AndroidLoggerAdapter.render(this);
+        }
+        return mRenderedMessage;
+    }
+}
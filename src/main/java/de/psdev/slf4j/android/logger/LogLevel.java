@@ -15,7 +15,7 @@ public enum LogLevel {
         mAndroidLogLevel = androidLogLevel;
     }
 
-    int getAndroidLogLevel() {
+    public int getAndroidLogLevel() {
         return mAndroidLogLevel;
     }
 }
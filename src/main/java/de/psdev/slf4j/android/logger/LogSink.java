@@ -0,0 +1,44 @@
+/*
+ * Copyright 2013 Philip Schiffer
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.psdev.slf4j.android.logger;
+
+/**
+ * Destination for {@link LogEvent}s, configured through {@link AndroidLoggerAdapter#SINKS_KEY}.
+ * <p/>
+ * Implementations must be thread safe. Sinks configured by class name need a public constructor taking a
+ * {@code Map<String, String>} with their properties, or a public no-arg constructor. The properties of a sink
+ * named {@code name} are all properties starting with {@code de.psdev.slf4j.android.logger.sink.name.}, keyed
+ * by the remainder of their name.
+ */
+public interface LogSink {
+
+    /**
+     * Write the given event. Use {@link LogEvent#getRenderedMessage()} to get the log line, it is rendered only
+     * once for all sinks.
+     * <p/>
+     * The arguments of the event may belong to the caller, who is free to change them as soon as this method
+     * returns. A sink that keeps the event must take the message, rendered line or arguments it needs before it
+     * returns, and must not use the arguments of the event afterwards.
+     *
+     * @param event the event, at or above the minimum level of this sink
+     */
+    void write(LogEvent event);
+
+    /**
+     * Write out any buffered events.
+     */
+    void flush();
+}
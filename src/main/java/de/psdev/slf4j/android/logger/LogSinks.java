@@ -0,0 +1,71 @@
+/*
+ * Copyright 2013 Philip Schiffer
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.psdev.slf4j.android.logger;
+
+import android.util.Log;
+
+import java.util.Map;
+
+/**
+ * Creates the {@link LogSink}s configured through {@link AndroidLoggerAdapter#SINKS_KEY}.
+ */
+final class LogSinks {
+
+    static final String LOGCAT = "logcat";
+    static final String MAPPED = "mapped";
+    static final String FILE = "file";
+
+    private LogSinks() {
+    }
+
+    /**
+     * @param type       {@code logcat}, {@code mapped}, {@code file} or the fully qualified name of a {@link LogSink}
+     *                   implementation
+     * @param properties properties of the sink
+     * @return the sink, or null if it could not be created, which is logged as a warning
+     */
+    static LogSink create(final String type, final Map<String, String> properties) {
+        if (LOGCAT.equalsIgnoreCase(type)) {
+            return new LogcatSink(AndroidLoggerAdapter.getMaxMessageBytes());
+        }
+        try {
+            if (MAPPED.equalsIgnoreCase(type)) {
+                return new MappedFileSink(properties);
+            }
+            if (FILE.equalsIgnoreCase(type)) {
+                return new RollingFileSink(properties);
+            }
+            final Class<?> sinkClass = Class.forName(type);
+            try {
+                return (LogSink) sinkClass.getConstructor(Map.class).newInstance(properties);
+            } catch (final NoSuchMethodException ignored) {
+                return (LogSink) sinkClass.newInstance();
+            }
+        } catch (final Exception e) {
+            Log.w(AndroidLoggerAdapter.getLogTag(), "Could not create sink " + type, e);
+            return null;
+        }
+    }
+
+    /**
+     * @return the value of the given sink property
+     * @throws NumberFormatException if the value is not a number
+     */
+    static long getLongProperty(final Map<String, String> properties, final String name, final long defaultValue) {
+        final String value = properties.get(name);
+        return value != null ? Long.parseLong(value.trim()) : defaultValue;
+    }
+}
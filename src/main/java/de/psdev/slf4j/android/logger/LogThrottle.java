@@ -0,0 +1,81 @@
+/*
+ * Copyright 2013 Philip Schiffer
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package de.psdev.slf4j.android.logger;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Drops messages of one logger and level by sampling and a rate limit, before anything about them is determined.
+ * <p/>
+ * Sampling keeps every n-th message. The rate limit is a token bucket holding one second worth of messages,
+ * implemented as a single compare-and-set of the time the next message is due, so neither allocates nor locks.
+ */
+final class LogThrottle {
+
+    private static final long BURST_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final int mSampleRate;
+    private final long mIntervalNanos;
+    private final AtomicLong mSampleCounter = new AtomicLong();
+    private final AtomicLong mNextDue;
+    private final AtomicLong mSuppressed = new AtomicLong();
+
+    /**
+     * @param sampleRate       keep one in this many messages, 1 or less keeps all
+     * @param permitsPerSecond maximum number of messages per second, 0 or less for no limit
+     */
+    LogThrottle(final int sampleRate, final int permitsPerSecond) {
+        mSampleRate = Math.max(sampleRate, 1);
+        mIntervalNanos = permitsPerSecond > 0 ? BURST_NANOS / permitsPerSecond : 0;
+        mNextDue = new AtomicLong(System.nanoTime());
+    }
+
+    /**
+     * @return true if the message may be logged, false if it is dropped and counted
+     */
+    boolean tryAcquire() {
+        if (mSampleRate > 1 && mSampleCounter.getAndIncrement() % mSampleRate != 0) {
+            mSuppressed.incrementAndGet();
+            return false;
+        }
+        if (mIntervalNanos == 0) {
+            return true;
+        }
+        final long now = System.nanoTime();
+        while (true) {
+            final long due = mNextDue.get();
+            // nanoTime may be negative, only differences are meaningful
+            final long next = (due - now > 0 ? due : now) + mIntervalNanos;
+            if (next - now > BURST_NANOS) {
+                mSuppressed.incrementAndGet();
+                return false;
+            }
+            if (mNextDue.compareAndSet(due, next)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * @return the number of messages dropped since the last call
+     */
+    long drainSuppressed() {
+        return mSuppressed.getAndSet(0);
+    }
+}
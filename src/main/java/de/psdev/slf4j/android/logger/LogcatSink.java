@@ -0,0 +1,208 @@
+/*
+ * Copyright 2013 Philip Schiffer
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package de.psdev.slf4j.android.logger;
+
+import android.util.Log;
+
+/**
+ * {@link LogSink} writing the rendered {@link LogEvent}s to {@link Log}. This is the default sink.
+ * <p/>
+ * Logcat truncates entries at about 4 KB. Messages (including the stack trace of their throwable) longer than
+ * the configured maximum number of UTF-8 bytes are split into numbered records like {@code [1/3] ...},
+ * preferably at line breaks.
+ */
+final class LogcatSink implements LogSink {
+
+    static final int DEFAULT_MAX_MESSAGE_BYTES = 4000;
+
+    /**
+     * Room left in each record for the {@code [i/n] } prefix
+     */
+    private static final int CHUNK_PREFIX_RESERVE = 16;
+
+    private static final ThreadLocal<ChunkBuffer> CHUNK_BUFFER = new ThreadLocal<ChunkBuffer>() {
+        @Override
+        protected ChunkBuffer initialValue() {
+            return new ChunkBuffer();
+        }
+    };
+
+    private final int mMaxMessageBytes;
+
+    /**
+     * @param maxMessageBytes maximum size of a record in UTF-8 bytes, 0 disables splitting
+     */
+    LogcatSink(final int maxMessageBytes) {
+        mMaxMessageBytes = maxMessageBytes > 0 ? Math.max(maxMessageBytes, 2 * CHUNK_PREFIX_RESERVE) : 0;
+    }
+
+    @Override
+    public void write(final LogEvent event) {
+        final String tag = AndroidLoggerAdapter.getLogTag();
+        final String message = event.getRenderedMessage();
+        final Throwable throwable = event.getThrowable();
+        if (mMaxMessageBytes > 0) {
+            if (throwable != null) {
+                // render the stack trace only once, Log would render it again to append it to the message
+                writeChunked(event.getLevel().getAndroidLogLevel(), tag,
+                    message + '\n' + Log.getStackTraceString(throwable));
+                return;
+            }
+            if (message.length() > mMaxMessageBytes / 3) {
+                writeChunked(event.getLevel().getAndroidLogLevel(), tag, message);
+                return;
+            }
+        }
+        switch (event.getLevel().getAndroidLogLevel()) {
+            case Log.VERBOSE:
+                if (throwable != null) {
+                    Log.v(tag, message, throwable);
+                } else {
+                    Log.v(tag, message);
+                }
+                break;
+            case Log.DEBUG:
+                if (throwable != null) {
+                    Log.d(tag, message, throwable);
+                } else {
+                    Log.d(tag, message);
+                }
+                break;
+            case Log.INFO:
+                if (throwable != null) {
+                    Log.i(tag, message, throwable);
+                } else {
+                    Log.i(tag, message);
+                }
+                break;
+            case Log.WARN:
+                if (throwable != null) {
+                    Log.w(tag, message, throwable);
+                } else {
+                    Log.w(tag, message);
+                }
+                break;
+            case Log.ERROR:
+                if (throwable != null) {
+                    Log.e(tag, message, throwable);
+                } else {
+                    Log.e(tag, message);
+                }
+                break;
+            default:
+                // nop
+                break;
+        }
+    }
+
+    @Override
+    public void flush() {
+        // logcat is not buffered
+    }
+
+    /**
+     * Write the text as a single record, or split it into records if it is too long.
+     */
+    private void writeChunked(final int priority, final String tag, final String text) {
+        if (text.length() <= mMaxMessageBytes / 3) {
+            // fits even if every character takes three bytes
+            Log.println(priority, tag, text);
+            return;
+        }
+        final ChunkBuffer buffer = CHUNK_BUFFER.get();
+        final int chunks = buffer.split(text, mMaxMessageBytes - CHUNK_PREFIX_RESERVE);
+        if (chunks == 1) {
+            Log.println(priority, tag, text);
+            return;
+        }
+        final StringBuilder builder = buffer.mBuilder;
+        for (int i = 0; i < chunks; i++) {
+            builder.setLength(0);
+            builder.append('[').append(i + 1).append('/').append(chunks).append("] ");
+            builder.append(text, buffer.mStarts[i], buffer.mEnds[i]);
+            Log.println(priority, tag, builder.toString());
+        }
+        builder.setLength(0);
+        if (builder.capacity() > 2 * mMaxMessageBytes) {
+            buffer.mBuilder = new StringBuilder(mMaxMessageBytes);
+        }
+    }
+
+    /**
+     * Per-thread buffer for splitting messages, reused for every long message.
+     */
+    private static final class ChunkBuffer {
+        StringBuilder mBuilder = new StringBuilder();
+        int[] mStarts = new int[8];
+        int[] mEnds = new int[8];
+
+        /**
+         * Determine the ranges of the records. A record ends at the last line break that fits, or at the
+         * last character that fits if it does not contain one. Surrogate pairs are never split.
+         *
+         * @return the number of records
+         */
+        int split(final String text, final int maxBytes) {
+            final int length = text.length();
+            int count = 0;
+            int start = 0;
+            while (start < length) {
+                int bytes = 0;
+                int lastBreak = -1;
+                int i = start;
+                while (i < length) {
+                    final char c = text.charAt(i);
+                    final int charCount = Character.isHighSurrogate(c) && i + 1 < length
+                        && Character.isLowSurrogate(text.charAt(i + 1)) ? 2 : 1;
+                    final int charBytes = charCount == 2 ? 4 : c < 0x80 ? 1 : c < 0x800 ? 2 : 3;
+                    if (bytes + charBytes > maxBytes) {
+                        break;
+                    }
+                    if (c == '\n') {
+                        lastBreak = i;
+                    }
+                    bytes += charBytes;
+                    i += charCount;
+                }
+                int end = i;
+                int next = i;
+                if (i < length && lastBreak > start) {
+                    end = lastBreak;
+                    next = lastBreak + 1;
+                } else if (i < length && text.charAt(i) == '\n') {
+                    next = i + 1;
+                }
+                add(count++, start, end);
+                start = next;
+            }
+            return count;
+        }
+
+        private void add(final int index, final int start, final int end) {
+            if (index == mStarts.length) {
+                final int[] starts = new int[index * 2];
+                System.arraycopy(mStarts, 0, starts, 0, index);
+                mStarts = starts;
+                final int[] ends = new int[index * 2];
+                System.arraycopy(mEnds, 0, ends, 0, index);
+                mEnds = ends;
+            }
+            mStarts[index] = start;
+            mEnds[index] = end;
+        }
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2013 Philip Schiffer
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package de.psdev.slf4j.android.logger;
+
+/**
+ * Immutable snapshot of the configuration used by {@link AndroidLoggerAdapter}.
+ * <p/>
+ * A change creates a new snapshot which is published through a single volatile field. A log call reads that
+ * field once, so it sees either the old or the new configuration as a whole, without taking a lock.
+ */
+final class LoggerConfiguration {
+
+    private final LogLevel mLogLevel;
+    private final String mLogTag;
+    private final LoggerLevelMap mLogLevels;
+    private final LoggerLevelMap mCallerCaptureLevels;
+    private final CallerResolver mCallerResolver;
+    private final int mCallerMaxDepth;
+    private final PatternLayout mLayout;
+    private final PatternLayout mLayoutWithoutCaller;
+    private final int mMaxMessageBytes;
+    private final ArgumentSnapshot mArgumentSnapshot;
+    private final int mLoggableThreshold;
+
+    /**
+     * @param logLevel            default level of loggers without a configured level
+     * @param logLevels           level thresholds by logger name prefix
+     * @param callerCaptureLevels caller capture thresholds by logger name prefix
+     * @param loggableThreshold   lowest Android priority {@code Log.isLoggable} allows for the log tag, limits
+     *                            the level of all loggers
+     */
+    LoggerConfiguration(final LogLevel logLevel, final String logTag, final LoggerLevelMap logLevels,
+                        final LoggerLevelMap callerCaptureLevels, final CallerResolver callerResolver,
+                        final int callerMaxDepth, final PatternLayout layout, final PatternLayout layoutWithoutCaller,
+                        final int maxMessageBytes, final ArgumentSnapshot argumentSnapshot,
+                        final int loggableThreshold) {
+        mLogLevel = logLevel;
+        mLogTag = logTag;
+        mLogLevels = logLevels;
+        mCallerCaptureLevels = callerCaptureLevels;
+        mCallerResolver = callerResolver;
+        mCallerMaxDepth = callerMaxDepth;
+        mLayout = layout;
+        mLayoutWithoutCaller = layoutWithoutCaller;
+        mMaxMessageBytes = maxMessageBytes;
+        mArgumentSnapshot = argumentSnapshot;
+        mLoggableThreshold = loggableThreshold;
+    }
+
+    /**
+     * @return a copy with the given default level
+     */
+    LoggerConfiguration withLogLevel(final LogLevel logLevel) {
+        return withLevels(logLevel, mLogTag, mLogLevels, mCallerCaptureLevels);
+    }
+
+    /**
+     * @return a copy with the given log tag
+     */
+    LoggerConfiguration withLogTag(final String logTag) {
+        return withLevels(mLogLevel, logTag, mLogLevels, mCallerCaptureLevels);
+    }
+
+    /**
+     * @return a copy with the given settings that can be changed by reloading the configuration
+     */
+    LoggerConfiguration withLevels(final LogLevel logLevel, final String logTag, final LoggerLevelMap logLevels,
+                                   final LoggerLevelMap callerCaptureLevels) {
+        return new LoggerConfiguration(logLevel, logTag, logLevels, callerCaptureLevels, mCallerResolver,
+            mCallerMaxDepth, mLayout, mLayoutWithoutCaller, mMaxMessageBytes, mArgumentSnapshot, mLoggableThreshold);
+    }
+
+    /**
+     * @return a copy with the given lowest priority allowed by {@code Log.isLoggable}
+     */
+    LoggerConfiguration withLoggableThreshold(final int loggableThreshold) {
+        return new LoggerConfiguration(mLogLevel, mLogTag, mLogLevels, mCallerCaptureLevels, mCallerResolver,
+            mCallerMaxDepth, mLayout, mLayoutWithoutCaller, mMaxMessageBytes, mArgumentSnapshot, loggableThreshold);
+    }
+
+    /**
+     * @return the Android priority from which on messages of the given logger are logged
+     */
+    int resolveLevelThreshold(final String loggerName) {
+        return Math.max(mLogLevels.resolve(loggerName, mLogLevel.getAndroidLogLevel()), mLoggableThreshold);
+    }
+
+    /**
+     * @return the Android priority from which on the caller is determined for the given logger
+     */
+    int resolveCallerCaptureThreshold(final String loggerName) {
+        return mCallerCaptureLevels.resolve(loggerName);
+    }
+
+    LogLevel getLogLevel() {
+        return mLogLevel;
+    }
+
+    String getLogTag() {
+        return mLogTag;
+    }
+
+    CallerResolver getCallerResolver() {
+        return mCallerResolver;
+    }
+
+    int getCallerMaxDepth() {
+        return mCallerMaxDepth;
+    }
+
+    PatternLayout getLayout() {
+        return mLayout;
+    }
+
+    /**
+     * @return the layout for events without a caller
+     */
+    PatternLayout getLayoutWithoutCaller() {
+        return mLayoutWithoutCaller;
+    }
+
+    int getMaxMessageBytes() {
+        return mMaxMessageBytes;
+    }
+
+    ArgumentSnapshot getArgumentSnapshot() {
+        return mArgumentSnapshot;
+    }
+
+    int getLoggableThreshold() {
+        return mLoggableThreshold;
+    }
+
+    /**
+     * @return the log line for the given event, rendered with the configured layout
+     */
+    String render(final LogEvent event) {
+        if (event.getCaller() == null && mLayout.requiresCaller()) {
+            return mLayoutWithoutCaller.format(event);
+        }
+        return mLayout.format(event);
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2013 Philip Schiffer
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package de.psdev.slf4j.android.logger;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Level thresholds configured per logger name prefix, e.g. {@code com.acme.sync=WARN}.
+ * <p/>
+ * A logger name resolves to the entry of its longest configured prefix ending at a package or inner class
+ * boundary, or to the default threshold if no prefix matches. Thresholds are Android log priorities, with
+ * {@link #OFF} disabling a logger entirely. Resolution allocates, so it is meant to be done once per logger
+ * and the result cached.
+ */
+final class LoggerLevelMap {
+
+    static final int OFF = Integer.MAX_VALUE;
+
+    static final String OFF_VALUE = "off";
+    private static final String WILDCARD_SUFFIX = ".*";
+
+    private final int mDefaultThreshold;
+    private final Map<String, Integer> mThresholds;
+
+    /**
+     * @param defaultThreshold threshold for loggers without a matching prefix
+     * @param levels           level names by logger name prefix
+     */
+    LoggerLevelMap(final int defaultThreshold, final Map<String, String> levels) {
+        this(defaultThreshold, levels, false);
+    }
+
+    private LoggerLevelMap(final int defaultThreshold, final Map<String, String> values, final boolean numeric) {
+        mDefaultThreshold = defaultThreshold;
+        mThresholds = new HashMap<String, Integer>();
+        for (final Map.Entry<String, String> entry : values.entrySet()) {
+            String prefix = entry.getKey();
+            if (prefix.endsWith(WILDCARD_SUFFIX)) {
+                prefix = prefix.substring(0, prefix.length() - WILDCARD_SUFFIX.length());
+            }
+            if (!numeric) {
+                mThresholds.put(prefix, parseThreshold(entry.getValue()));
+                continue;
+            }
+            try {
+                mThresholds.put(prefix, Integer.parseInt(entry.getValue().trim()));
+            } catch (final NumberFormatException ignored) {
+                // skip invalid entries
+            }
+        }
+    }
+
+    /**
+     * Map logger name prefixes to plain numbers instead of levels, e.g. rate limits.
+     *
+     * @param defaultValue value for loggers without a matching prefix
+     * @param values       numbers by logger name prefix
+     */
+    static LoggerLevelMap ofNumbers(final int defaultValue, final Map<String, String> values) {
+        return new LoggerLevelMap(defaultValue, values, true);
+    }
+
+    /**
+     * @return the threshold configured for the given logger name
+     */
+    int resolve(final String loggerName) {
+        return resolve(loggerName, mDefaultThreshold);
+    }
+
+    /**
+     * @param defaultThreshold threshold for a logger name without a matching prefix
+     * @return the threshold configured for the given logger name
+     */
+    int resolve(final String loggerName, final int defaultThreshold) {
+        String name = loggerName;
+        while (name != null) {
+            final Integer threshold = mThresholds.get(name);
+            if (threshold != null) {
+                return threshold;
+            }
+            final int boundary = Math.max(name.lastIndexOf('.'), name.lastIndexOf('$'));
+            name = boundary > 0 ? name.substring(0, boundary) : null;
+        }
+        return defaultThreshold;
+    }
+
+    /**
+     * @return the Android priority for the given level name, or {@link #OFF}
+     */
+    static int parseThreshold(final String levelStr) {
+        if (OFF_VALUE.equalsIgnoreCase(levelStr.trim())) {
+            return OFF;
+        }
+        return AndroidLoggerAdapter.stringToLevel(levelStr.trim()).getAndroidLogLevel();
+    }
+}
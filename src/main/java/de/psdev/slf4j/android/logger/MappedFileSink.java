@@ -0,0 +1,204 @@
+/*
+ * Copyright 2013 Philip Schiffer
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.psdev.slf4j.android.logger;
+
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@link LogSink} keeping the most recent events in a memory-mapped file that survives the process being
+ * killed. Use {@link MappedLogReader} to decode the file.
+ * <p/>
+ * In the {@code text} format each record holds the timestamp, the level and the rendered log line including the
+ * stack trace of the throwable, truncated to half the size of the buffer. The {@code binary} format writes
+ * events with {@link BinaryLogFormat} and keeps the dictionary in a second file next to the buffer, with
+ * {@link #DICTIONARY_SUFFIX} appended to its name. The dictionary file is only written when a new string is
+ * interned. When the dictionary is full, strings are written inline until the ring overwrote all records
+ * referencing it, then the dictionary file is truncated and a new dictionary is started. If the dictionary file
+ * cannot be written, the dictionary is given up the same way.
+ */
+final class MappedFileSink implements LogSink {
+
+    static final String PATH_PROPERTY = "path";
+    static final String SIZE_PROPERTY = "size";
+    static final String FORMAT_PROPERTY = "format";
+    static final String DICTIONARY_SUFFIX = ".dict";
+
+    static final int DEFAULT_SIZE = 1024 * 1024;
+    static final int MIN_SIZE = 1024;
+
+    /**
+     * Record format: timestamp (8 bytes), level ordinal (1 byte), UTF-8 log line
+     */
+    static final int FORMAT_TEXT = 0;
+    /**
+     * Record format: {@link BinaryLogFormat} event
+     */
+    static final int FORMAT_BINARY = 1;
+
+    private static final int TIMESTAMP_AND_LEVEL_SIZE = 9;
+
+    private final RingBuffer mRing;
+    private final ByteWriter mWriter = new ByteWriter(256);
+    private final BinaryLogFormat.Encoder mEncoder;
+    private final ByteWriter mDictionaryWriter;
+    private final File mDictionaryFile;
+    private FileOutputStream mDictionaryOutput;
+
+    /**
+     * @param properties {@code path} of the file, its {@code size} in bytes and the record {@code format},
+     *                   {@code text} or {@code binary}
+     */
+    public MappedFileSink(final Map<String, String> properties) throws IOException {
+        final String path = properties.get(PATH_PROPERTY);
+        if (path == null) {
+            throw new IllegalArgumentException("Missing property " + PATH_PROPERTY);
+        }
+        final int size = (int) LogSinks.getLongProperty(properties, SIZE_PROPERTY, DEFAULT_SIZE);
+        if (size < MIN_SIZE) {
+            throw new IllegalArgumentException("Size must be at least " + MIN_SIZE + " bytes");
+        }
+        final File file = new File(path);
+        final File parent = file.getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Could not create " + parent);
+        }
+        final boolean binary = "binary".equalsIgnoreCase(properties.get(FORMAT_PROPERTY));
+        mRing = RingBuffer.open(file, size, binary ? FORMAT_BINARY : FORMAT_TEXT);
+        if (binary) {
+            mDictionaryFile = new File(path + DICTIONARY_SUFFIX);
+            mEncoder = new BinaryLogFormat.Encoder(BinaryLogFormat.DEFAULT_MAX_DICTIONARY_SIZE,
+                BinaryLogFormat.DEFAULT_MAX_DICTIONARY_BYTES);
+            mDictionaryWriter = new ByteWriter(256);
+            if (!mRing.isEmpty() && mDictionaryFile.isFile()) {
+                // continue the dictionary of the events kept from the previous run
+                final List<String> dictionary = readDictionary(mDictionaryFile);
+                for (final String value : dictionary) {
+                    mEncoder.define(value);
+                }
+                mDictionaryOutput = new FileOutputStream(mDictionaryFile, true);
+            } else {
+                mRing.clear();
+                mDictionaryOutput = new FileOutputStream(mDictionaryFile, false);
+            }
+        } else {
+            mEncoder = null;
+            mDictionaryWriter = null;
+            mDictionaryFile = null;
+            mDictionaryOutput = null;
+        }
+    }
+
+    @Override
+    public synchronized void write(final LogEvent event) {
+        if (mEncoder != null) {
+            writeBinary(event);
+            return;
+        }
+        mWriter.reset();
+        mWriter.putLong(event.getTimestamp());
+        mWriter.putByte(event.getLevel().ordinal());
+        final int maxTextBytes = mRing.maxRecordLength() - TIMESTAMP_AND_LEVEL_SIZE;
+        final int written = mWriter.putUtf8(event.getRenderedMessage(), maxTextBytes);
+        if (event.getThrowable() != null && written < maxTextBytes) {
+            mWriter.putByte('\n');
+            mWriter.putUtf8(Log.getStackTraceString(event.getThrowable()), maxTextBytes - written - 1);
+        }
+        mRing.append(mWriter.bytes(), mWriter.length());
+    }
+
+    private void writeBinary(final LogEvent event) {
+        final String stackTrace = event.getThrowable() != null ? Log.getStackTraceString(event.getThrowable()) : null;
+        encode(event, stackTrace);
+        if (mDictionaryWriter.length() > 0) {
+            try {
+                mDictionaryOutput.write(mDictionaryWriter.bytes(), 0, mDictionaryWriter.length());
+            } catch (final IOException e) {
+                // the event references strings missing from the file, write them inline instead
+                Log.w(AndroidLoggerAdapter.getLogTag(), "Could not write dictionary " + mDictionaryFile
+                    + ", writing strings inline", e);
+                mEncoder.retire(mRing.getHead());
+                encode(event, stackTrace);
+            }
+        }
+        if (mWriter.length() <= mRing.maxRecordLength()) {
+            mRing.append(mWriter.bytes(), mWriter.length());
+        }
+        if (mEncoder.recycle(mRing.getTail(), mRing.getHead())) {
+            try {
+                mDictionaryOutput.close();
+                mDictionaryOutput = new FileOutputStream(mDictionaryFile, false);
+            } catch (final IOException e) {
+                // new strings would get the ids of the old ones still in the file, try again later
+                Log.w(AndroidLoggerAdapter.getLogTag(), "Could not truncate dictionary " + mDictionaryFile
+                    + ", writing strings inline", e);
+                mEncoder.retire(mRing.getHead());
+            }
+        }
+    }
+
+    /**
+     * Encode the event into {@link #mWriter} and its new dictionary strings into {@link #mDictionaryWriter}.
+     */
+    private void encode(final LogEvent event, final String stackTrace) {
+        mWriter.reset();
+        mDictionaryWriter.reset();
+        mEncoder.encode(event, stackTrace, mWriter, mDictionaryWriter);
+        if (mWriter.length() > mRing.maxRecordLength()) {
+            // keep the beginning of the message instead of the arguments and the stack trace
+            final String message = event.getMessage();
+            final int maxLength = mRing.maxRecordLength() / 4;
+            mWriter.reset();
+            mEncoder.encode(event.withMessage(message.length() > maxLength ? message.substring(0, maxLength) : message),
+                null, mWriter, mDictionaryWriter);
+        }
+    }
+
+    /**
+     * @return the strings of the given dictionary file
+     */
+    static List<String> readDictionary(final File file) throws IOException {
+        final InputStream input = new FileInputStream(file);
+        try {
+            byte[] bytes = new byte[(int) Math.max(file.length(), 16)];
+            int length = 0;
+            int read;
+            while ((read = input.read(bytes, length, bytes.length - length)) != -1) {
+                length += read;
+                if (length == bytes.length) {
+                    final byte[] grown = new byte[bytes.length * 2];
+                    System.arraycopy(bytes, 0, grown, 0, length);
+                    bytes = grown;
+                }
+            }
+            return BinaryLogFormat.readDictionary(bytes, length);
+        } finally {
+            input.close();
+        }
+    }
+
+    @Override
+    public synchronized void flush() {
+        mRing.force();
+    }
+}
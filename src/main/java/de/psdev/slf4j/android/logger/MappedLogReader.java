@@ -0,0 +1,140 @@
+/*
+ * Copyright 2013 Philip Schiffer
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.psdev.slf4j.android.logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+
+/**
+ * Decodes the file written by the {@code mapped} sink, e.g. after pulling it from a device:
+ * <pre>
+ * java -cp slf4j-android-logger.jar de.psdev.slf4j.android.logger.MappedLogReader logs.ring [layout]
+ * </pre>
+ * Events are printed from the oldest to the newest, one per line prefixed with date and level. Events in the
+ * binary format are rendered with the given layout pattern, by default {@link PatternLayout#DEFAULT_PATTERN}.
+ * Their dictionary is read from the file next to the buffer.
+ */
+public final class MappedLogReader {
+
+    private MappedLogReader() {
+    }
+
+    public static void main(final String[] args) throws IOException {
+        if (args.length != 1 && args.length != 2) {
+            System.err.println("Usage: MappedLogReader <file> [layout]");
+            System.exit(1);
+        }
+        final PrintWriter out = new PrintWriter(System.out);
+        read(new File(args[0]), args.length == 2 ? args[1] : PatternLayout.DEFAULT_PATTERN, out);
+        out.flush();
+    }
+
+    /**
+     * Decode the given file.
+     *
+     * @param file    the file written by the {@code mapped} sink
+     * @param pattern layout pattern for events in the binary format
+     * @param out     receives one line per event
+     * @throws IOException if the file could not be read or is not a log ring buffer
+     */
+    public static void read(final File file, final String pattern, final Appendable out) throws IOException {
+        final RingBuffer ring = RingBuffer.openForReading(file);
+        final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS", Locale.US);
+        if (ring.getFormat() == MappedFileSink.FORMAT_BINARY) {
+            readBinary(ring, new File(file.getPath() + MappedFileSink.DICTIONARY_SUFFIX), pattern, dateFormat, out);
+            return;
+        }
+        if (ring.getFormat() != MappedFileSink.FORMAT_TEXT) {
+            throw new IOException("Unsupported record format " + ring.getFormat());
+        }
+        final LogLevel[] levels = LogLevel.values();
+        for (final byte[] record : ring.readRecords()) {
+            final ByteBuffer buffer = ByteBuffer.wrap(record);
+            final long timestamp = buffer.getLong();
+            final int level = buffer.get();
+            out.append(dateFormat.format(new Date(timestamp))).append(' ');
+            out.append(level >= 0 && level < levels.length ? levels[level].name() : "?").append(' ');
+            final String text = decodeUtf8(record, buffer.position(), buffer.remaining());
+            out.append(text);
+            if (!text.endsWith("\n")) {
+                out.append('\n');
+            }
+        }
+    }
+
+    private static void readBinary(final RingBuffer ring, final File dictionaryFile, final String pattern,
+                                   final SimpleDateFormat dateFormat, final Appendable out) throws IOException {
+        final BinaryLogFormat.Decoder decoder = new BinaryLogFormat.Decoder(
+            MappedFileSink.readDictionary(dictionaryFile));
+        final PatternLayout layout = PatternLayout.compile(pattern);
+        final PatternLayout layoutWithoutCaller = PatternLayout.compile(PatternLayout.DEFAULT_PATTERN_WITHOUT_CALLER);
+        writeBinary(ring, decoder, layout, layoutWithoutCaller, dateFormat, out);
+    }
+
+    /**
+     * Decode the binary events of the given ring and write them one per line prefixed with date and level.
+     */
+    static void writeBinary(final RingBuffer ring, final BinaryLogFormat.Decoder decoder, final PatternLayout layout,
+                            final PatternLayout layoutWithoutCaller, final SimpleDateFormat dateFormat,
+                            final Appendable out) throws IOException {
+        for (final byte[] record : ring.readRecords()) {
+            final LogEvent event;
+            try {
+                event = decoder.decode(record, record.length);
+            } catch (final IllegalArgumentException e) {
+                out.append("Could not decode event: ").append(e.getMessage()).append('\n');
+                continue;
+            }
+            writeEvent(event, layout, layoutWithoutCaller, dateFormat, out);
+        }
+    }
+
+    /**
+     * Write a decoded event on a line prefixed with date and level, followed by its stack trace.
+     */
+    static void writeEvent(final LogEvent event, final PatternLayout layout, final PatternLayout layoutWithoutCaller,
+                           final SimpleDateFormat dateFormat, final Appendable out) throws IOException {
+        out.append(dateFormat.format(new Date(event.getTimestamp()))).append(' ');
+        out.append(event.getLevel().name()).append(' ');
+        if (event.getCaller() == null && layout.requiresCaller()) {
+            out.append(layoutWithoutCaller.format(event));
+        } else {
+            out.append(layout.format(event));
+        }
+        out.append('\n');
+        final String stackTrace = event.getDecodedStackTrace();
+        if (stackTrace != null) {
+            out.append(stackTrace);
+            if (!stackTrace.endsWith("\n")) {
+                out.append('\n');
+            }
+        }
+    }
+
+    private static String decodeUtf8(final byte[] bytes, final int offset, final int length) {
+        try {
+            return new String(bytes, offset, length, "UTF-8");
+        } catch (final UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright 2013 Philip Schiffer
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package de.psdev.slf4j.android.logger;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Immutable map for the few entries of an MDC, kept in two arrays searched linearly.
+ * <p/>
+ * Changes return a new map, so a map can be handed to other threads, e.g. with a queued {@link LogEvent}, without
+ * copying it.
+ */
+final class MdcMap extends AbstractMap<String, String> {
+
+    private final String[] mKeys;
+    private final String[] mValues;
+
+    private MdcMap(final String[] keys, final String[] values) {
+        mKeys = keys;
+        mValues = values;
+    }
+
+    /**
+     * @return a map with the single given entry
+     */
+    static MdcMap of(final String key, final String value) {
+        return new MdcMap(new String[]{key}, new String[]{value});
+    }
+
+    /**
+     * @return a map with the entries of the given map, or null if it is null or empty
+     */
+    static MdcMap of(final Map<String, String> map) {
+        if (map == null || map.isEmpty()) {
+            return null;
+        }
+        if (map instanceof MdcMap) {
+            return (MdcMap) map;
+        }
+        final String[] keys = new String[map.size()];
+        final String[] values = new String[keys.length];
+        int i = 0;
+        for (final Map.Entry<String, String> entry : map.entrySet()) {
+            keys[i] = entry.getKey();
+            values[i] = entry.getValue();
+            i++;
+        }
+        return new MdcMap(keys, values);
+    }
+
+    /**
+     * @return a map with the given entry added or replaced
+     */
+    MdcMap with(final String key, final String value) {
+        final int index = indexOf(key);
+        final int length = mKeys.length;
+        if (index >= 0) {
+            final String[] values = new String[length];
+            System.arraycopy(mValues, 0, values, 0, length);
+            values[index] = value;
+            return new MdcMap(mKeys, values);
+        }
+        final String[] keys = new String[length + 1];
+        final String[] values = new String[length + 1];
+        System.arraycopy(mKeys, 0, keys, 0, length);
+        System.arraycopy(mValues, 0, values, 0, length);
+        keys[length] = key;
+        values[length] = value;
+        return new MdcMap(keys, values);
+    }
+
+    /**
+     * @return a map without the given key, or null if no entries are left
+     */
+    MdcMap without(final String key) {
+        final int index = indexOf(key);
+        if (index < 0) {
+            return this;
+        }
+        final int length = mKeys.length - 1;
+        if (length == 0) {
+            return null;
+        }
+        final String[] keys = new String[length];
+        final String[] values = new String[length];
+        System.arraycopy(mKeys, 0, keys, 0, index);
+        System.arraycopy(mValues, 0, values, 0, index);
+        System.arraycopy(mKeys, index + 1, keys, index, length - index);
+        System.arraycopy(mValues, index + 1, values, index, length - index);
+        return new MdcMap(keys, values);
+    }
+
+    private int indexOf(final Object key) {
+        for (int i = 0; i < mKeys.length; i++) {
+            if (mKeys[i] == key || mKeys[i] != null && mKeys[i].equals(key)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public String get(final Object key) {
+        final int index = indexOf(key);
+        return index >= 0 ? mValues[index] : null;
+    }
+
+    @Override
+    public boolean containsKey(final Object key) {
+        return indexOf(key) >= 0;
+    }
+
+    @Override
+    public int size() {
+        return mKeys.length;
+    }
+
+    @Override
+    public Set<Entry<String, String>> entrySet() {
+        return new AbstractSet<Entry<String, String>>() {
+            @Override
+            public Iterator<Entry<String, String>> iterator() {
+                return new Iterator<Entry<String, String>>() {
+                    private int mIndex;
+
+                    @Override
+                    public boolean hasNext() {
+                        return mIndex < mKeys.length;
+                    }
+
+                    @Override
+                    public Entry<String, String> next() {
+                        if (mIndex >= mKeys.length) {
+                            throw new NoSuchElementException();
+                        }
+                        final Entry<String, String> entry =
+                            new SimpleImmutableEntry<String, String>(mKeys[mIndex], mValues[mIndex]);
+                        mIndex++;
+                        return entry;
+                    }
+
+                    @Override
+                    public void remove() {
+                        throw new UnsupportedOperationException();
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return mKeys.length;
+            }
+        };
+    }
+}
@@ -0,0 +1,243 @@
+/*
+ * Copyright 2013 Philip Schiffer
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package de.psdev.slf4j.android.logger;
+
+import org.slf4j.helpers.MessageFormatter;
+
+/**
+ * A pre-parsed SLF4J message pattern such as {@code "Synced {} items in {} ms"}.
+ * <p/>
+ * The positions of the placeholders and escape sequences are determined once per pattern, formatting then
+ * only copies the literal parts and the arguments into a per-thread buffer. The output is identical to
+ * {@link MessageFormatter}. Patterns are cached by identity in a small direct-mapped cache, which suits the
+ * usual case of log statements using String constants as patterns.
+ */
+final class MessageTemplate {
+
+    private static final int CACHE_SIZE = 256;
+    private static final MessageTemplate[] CACHE = new MessageTemplate[CACHE_SIZE];
+
+    private static final int INITIAL_CAPACITY = 256;
+    /**
+     * Buffers that grew beyond this size for an unusually long message are not kept around.
+     */
+    private static final int MAX_RETAINED_CAPACITY = 16 * 1024;
+
+    private static final ThreadLocal<Buffer> BUFFER = new ThreadLocal<Buffer>() {
+        @Override
+        protected Buffer initialValue() {
+            return new Buffer();
+        }
+    };
+
+    private static final char DELIM_START = '{';
+    private static final char ESCAPE_CHAR = '\\';
+    private static final String DELIM_STR = "{}";
+
+    /**
+     * {@code \{}}: a literal {@code {}}, the escape character is dropped
+     */
+    private static final byte ESCAPED = 0;
+    /**
+     * {@code {}}: a placeholder
+     */
+    private static final byte PLACEHOLDER = 1;
+    /**
+     * {@code \\{}}: a literal escape character followed by a placeholder
+     */
+    private static final byte ESCAPED_ESCAPE = 2;
+
+    private final String mPattern;
+    /**
+     * Index of the {@code {}} for each placeholder or escape sequence, in order of occurrence
+     */
+    private final int[] mPositions;
+    private final byte[] mTypes;
+
+    private MessageTemplate(final String pattern) {
+        mPattern = pattern;
+        int count = 0;
+        int[] positions = new int[4];
+        byte[] types = new byte[4];
+        int i = 0;
+        int j;
+        while ((j = pattern.indexOf(DELIM_STR, i)) != -1) {
+            final byte type;
+            if (j > 0 && pattern.charAt(j - 1) == ESCAPE_CHAR) {
+                if (j > 1 && pattern.charAt(j - 2) == ESCAPE_CHAR) {
+                    type = ESCAPED_ESCAPE;
+                    i = j + 2;
+                } else {
+                    type = ESCAPED;
+                    i = j + 1;
+                }
+            } else {
+                type = PLACEHOLDER;
+                i = j + 2;
+            }
+            if (count == positions.length) {
+                final int[] newPositions = new int[count * 2];
+                System.arraycopy(positions, 0, newPositions, 0, count);
+                positions = newPositions;
+                final byte[] newTypes = new byte[count * 2];
+                System.arraycopy(types, 0, newTypes, 0, count);
+                types = newTypes;
+            }
+            positions[count] = j;
+            types[count] = type;
+            count++;
+        }
+        mPositions = new int[count];
+        System.arraycopy(positions, 0, mPositions, 0, count);
+        mTypes = new byte[count];
+        System.arraycopy(types, 0, mTypes, 0, count);
+    }
+
+    /**
+     * @return the template for the given pattern, parsed on first use
+     */
+    static MessageTemplate get(final String pattern) {
+        final int index = System.identityHashCode(pattern) & (CACHE_SIZE - 1);
+        MessageTemplate template = CACHE[index];
+        if (template == null || template.mPattern != pattern) {
+            template = new MessageTemplate(pattern);
+            // racy but safe, templates are immutable
+            CACHE[index] = template;
+        }
+        return template;
+    }
+
+    /**
+     * Format the pattern with a single argument.
+     *
+     * @param pattern the pattern, may be null
+     */
+    static String format(final String pattern, final Object arg) {
+        if (pattern == null) {
+            return null;
+        }
+        return get(pattern).format(arg, null, null, 1);
+    }
+
+    /**
+     * Format the pattern with two arguments.
+     *
+     * @param pattern the pattern, may be null
+     */
+    static String format(final String pattern, final Object arg1, final Object arg2) {
+        if (pattern == null) {
+            return null;
+        }
+        return get(pattern).format(arg1, arg2, null, 2);
+    }
+
+    /**
+     * Format the pattern with the first {@code count} arguments of the given array.
+     *
+     * @param pattern the pattern, may be null
+     */
+    static String format(final String pattern, final Object[] args, final int count) {
+        if (pattern == null) {
+            return null;
+        }
+        return get(pattern).format(null, null, args, count);
+    }
+
+    /**
+     * Arguments are passed either as {@code arg1} and {@code arg2} or, if {@code args} is not null, as array
+     * so the one and two argument cases do not need an array.
+     */
+    private String format(final Object arg1, final Object arg2, final Object[] args, final int count) {
+        if (count == 0 || mPositions.length == 0) {
+            return mPattern;
+        }
+        final Buffer buffer = BUFFER.get();
+        final StringBuilder builder = buffer.obtain();
+        try {
+            final String pattern = mPattern;
+            int argIndex = 0;
+            int i = 0;
+            for (int k = 0; k < mPositions.length && argIndex < count; k++) {
+                final int j = mPositions[k];
+                switch (mTypes[k]) {
+                    case ESCAPED:
+                        builder.append(pattern, i, j - 1).append(DELIM_START);
+                        i = j + 1;
+                        break;
+                    case ESCAPED_ESCAPE:
+                        builder.append(pattern, i, j - 1);
+                        appendArgument(builder, args != null ? args[argIndex] : argIndex == 0 ? arg1 : arg2);
+                        argIndex++;
+                        i = j + 2;
+                        break;
+                    default:
+                        builder.append(pattern, i, j);
+                        appendArgument(builder, args != null ? args[argIndex] : argIndex == 0 ? arg1 : arg2);
+                        argIndex++;
+                        i = j + 2;
+                        break;
+                }
+            }
+            builder.append(pattern, i, pattern.length());
+            return builder.toString();
+        } finally {
+            buffer.release(builder);
+        }
+    }
+
+    private static void appendArgument(final StringBuilder builder, final Object arg) {
+        if (arg == null) {
+            builder.append("null");
+        } else if (arg.getClass().isArray()) {
+            // rare, leave arrays and their cycle detection to slf4j
+            builder.append(MessageFormatter.arrayFormat(DELIM_STR, new Object[]{arg}).getMessage());
+        } else {
+            try {
+                builder.append(arg.toString());
+            } catch (final Throwable t) {
+                builder.append("[FAILED toString()]");
+            }
+        }
+    }
+
+    /**
+     * Per-thread buffer. Arguments may log from {@code toString()}, in that case the nested call gets a
+     * buffer of its own.
+     */
+    private static final class Buffer {
+        private StringBuilder mBuilder = new StringBuilder(INITIAL_CAPACITY);
+        private boolean mInUse;
+
+        StringBuilder obtain() {
+            if (mInUse) {
+                return new StringBuilder(INITIAL_CAPACITY);
+            }
+            mInUse = true;
+            mBuilder.setLength(0);
+            return mBuilder;
+        }
+
+        void release(final StringBuilder builder) {
+            if (builder == mBuilder) {
+                if (builder.capacity() > MAX_RETAINED_CAPACITY) {
+                    mBuilder = new StringBuilder(INITIAL_CAPACITY);
+                }
+                mInUse = false;
+            }
+        }
+    }
+}
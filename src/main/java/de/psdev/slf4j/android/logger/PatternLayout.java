@@ -0,0 +1,405 @@
+/*
+ * Copyright 2013 Philip Schiffer
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package de.psdev.slf4j.android.logger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+
+/**
+ * Renders log lines according to a pattern such as {@code %msg [%class:%method:%line] %thread}.
+ * <p/>
+ * The pattern is compiled once into a chain of elements, each appending one field to a per-thread buffer that
+ * is reused between calls, so rendering a line only allocates the resulting String. Supported tokens:
+ * <table border="1">
+ * <tr><th>Token</th><th>Output</th></tr>
+ * <tr><td>{@code %msg}, {@code %m}</td><td>the message</td></tr>
+ * <tr><td>{@code %class}, {@code %C}</td><td>simple class name of the caller</td></tr>
+ * <tr><td>{@code %method}, {@code %M}</td><td>method name of the caller</td></tr>
+ * <tr><td>{@code %line}, {@code %L}</td><td>line number of the caller</td></tr>
+ * <tr><td>{@code %thread}, {@code %t}</td><td>the thread as printed by {@link Thread#toString()}</td></tr>
+ * <tr><td>{@code %threadName}</td><td>name of the thread</td></tr>
+ * <tr><td>{@code %threadId}</td><td>id of the thread</td></tr>
+ * <tr><td>{@code %marker}</td><td>the marker with its references, empty if there is none</td></tr>
+ * <tr><td>{@code %X{key}}</td><td>MDC value of {@code key} when the message was logged, empty if not set</td></tr>
+ * <tr><td>{@code %X}</td><td>all MDC entries as {@code key=value}, separated by {@code ", "}</td></tr>
+ * <tr><td>{@code %timestamp}</td><td>milliseconds since the epoch</td></tr>
+ * <tr><td>{@code %date}, {@code %d}</td><td>local time of day as {@code HH:mm:ss.SSS}</td></tr>
+ * <tr><td>{@code %%}</td><td>a literal {@code %}</td></tr>
+ * </table>
+ * Unknown tokens are copied to the output unchanged.
+ */
+final class PatternLayout {
+
+    static final String DEFAULT_PATTERN = "%msg [%class:%method:%line] %thread";
+    static final String DEFAULT_PATTERN_WITHOUT_CALLER = "%msg %thread";
+
+    private static final int INITIAL_CAPACITY = 256;
+    /**
+     * Buffers that grew beyond this size for an unusually long message are not kept around.
+     */
+    private static final int MAX_RETAINED_CAPACITY = 16 * 1024;
+
+    private static final ThreadLocal<StringBuilder> BUFFER = new ThreadLocal<StringBuilder>() {
+        @Override
+        protected StringBuilder initialValue() {
+            return new StringBuilder(INITIAL_CAPACITY);
+        }
+    };
+
+    private final String mPattern;
+    private final Element[] mElements;
+    private final boolean mRequiresCaller;
+    private final boolean mRequiresMdc;
+
+    private PatternLayout(final String pattern, final Element[] elements) {
+        mPattern = pattern;
+        mElements = elements;
+        boolean requiresCaller = false;
+        boolean requiresMdc = false;
+        for (final Element element : elements) {
+            requiresCaller |= element.requiresCaller();
+            requiresMdc |= element.requiresMdc();
+        }
+        mRequiresCaller = requiresCaller;
+        mRequiresMdc = requiresMdc;
+    }
+
+    /**
+     * @return true if the pattern contains a token that needs the caller to be determined
+     */
+    boolean requiresCaller() {
+        return mRequiresCaller;
+    }
+
+    /**
+     * @return true if the pattern contains a MDC token, so log events have to carry a copy of the MDC
+     */
+    boolean requiresMdc() {
+        return mRequiresMdc;
+    }
+
+    /**
+     * Render a log line.
+     *
+     * @param event the event, its caller must not be null if {@link #requiresCaller()} is true
+     */
+    String format(final LogEvent event) {
+        final StringBuilder builder = BUFFER.get();
+        builder.setLength(0);
+        for (final Element element : mElements) {
+            element.append(builder, event);
+        }
+        final String result = builder.toString();
+        if (builder.capacity() > MAX_RETAINED_CAPACITY) {
+            BUFFER.set(new StringBuilder(INITIAL_CAPACITY));
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "PatternLayout{" + mPattern + "}";
+    }
+
+    /**
+     * Compile the given pattern.
+     */
+    static PatternLayout compile(final String pattern) {
+        final List<Element> elements = new ArrayList<Element>();
+        final StringBuilder literal = new StringBuilder();
+        final int length = pattern.length();
+        int i = 0;
+        while (i < length) {
+            final char c = pattern.charAt(i++);
+            if (c != '%' || i == length) {
+                literal.append(c);
+                continue;
+            }
+            if (pattern.charAt(i) == '%') {
+                literal.append('%');
+                i++;
+                continue;
+            }
+            final int nameStart = i;
+            while (i < length && Character.isLetter(pattern.charAt(i))) {
+                i++;
+            }
+            final String name = pattern.substring(nameStart, i);
+            String option = null;
+            if (i < length && pattern.charAt(i) == '{') {
+                final int optionEnd = pattern.indexOf('}', i);
+                if (optionEnd != -1) {
+                    option = pattern.substring(i + 1, optionEnd);
+                    i = optionEnd + 1;
+                }
+            }
+            final Element element = createElement(name, option);
+            if (element == null) {
+                literal.append(pattern, nameStart - 1, i);
+                continue;
+            }
+            if (literal.length() > 0) {
+                elements.add(new LiteralElement(literal.toString()));
+                literal.setLength(0);
+            }
+            elements.add(element);
+        }
+        if (literal.length() > 0) {
+            elements.add(new LiteralElement(literal.toString()));
+        }
+        return new PatternLayout(pattern, elements.toArray(new Element[elements.size()]));
+    }
+
+    private static Element createElement(final String name, final String option) {
+        if ("msg".equals(name) || "m".equals(name) || "message".equals(name)) {
+            return new MessageElement();
+        }
+        if ("class".equals(name) || "C".equals(name)) {
+            return new ClassElement();
+        }
+        if ("method".equals(name) || "M".equals(name)) {
+            return new MethodElement();
+        }
+        if ("line".equals(name) || "L".equals(name)) {
+            return new LineElement();
+        }
+        if ("thread".equals(name) || "t".equals(name)) {
+            return new ThreadElement();
+        }
+        if ("threadName".equals(name)) {
+            return new ThreadNameElement();
+        }
+        if ("threadId".equals(name)) {
+            return new ThreadIdElement();
+        }
+        if ("marker".equals(name)) {
+            return new MarkerElement();
+        }
+        if ("X".equals(name) || "mdc".equals(name)) {
+            return new MdcElement(option);
+        }
+        if ("timestamp".equals(name)) {
+            return new TimestampElement();
+        }
+        if ("date".equals(name) || "d".equals(name)) {
+            return new DateElement(TimeZone.getDefault());
+        }
+        return null;
+    }
+
+    // Elements
+
+    abstract static class Element {
+
+        abstract void append(StringBuilder builder, LogEvent event);
+
+        boolean requiresCaller() {
+            return false;
+        }
+
+        boolean requiresMdc() {
+            return false;
+        }
+    }
+
+    static final class LiteralElement extends Element {
+        private final String mText;
+
+        LiteralElement(final String text) {
+            mText = text;
+        }
+
+        @Override
+        void append(final StringBuilder builder, final LogEvent event) {
+            builder.append(mText);
+        }
+    }
+
+    static final class MessageElement extends Element {
+        @Override
+        void append(final StringBuilder builder, final LogEvent event) {
+            builder.append(event.getMessage());
+        }
+    }
+
+    static final class ClassElement extends Element {
+        @Override
+        void append(final StringBuilder builder, final LogEvent event) {
+            final String className = event.getCaller().getClassName();
+            builder.append(className, className.lastIndexOf('.') + 1, className.length());
+        }
+
+        @Override
+        boolean requiresCaller() {
+            return true;
+        }
+    }
+
+    static final class MethodElement extends Element {
+        @Override
+        void append(final StringBuilder builder, final LogEvent event) {
+            builder.append(event.getCaller().getMethodName());
+        }
+
+        @Override
+        boolean requiresCaller() {
+            return true;
+        }
+    }
+
+    static final class LineElement extends Element {
+        @Override
+        void append(final StringBuilder builder, final LogEvent event) {
+            builder.append(event.getCaller().getLineNumber());
+        }
+
+        @Override
+        boolean requiresCaller() {
+            return true;
+        }
+    }
+
+    /**
+     * Appends the same text as {@link Thread#toString()} without creating intermediate Strings.
+     */
+    static final class ThreadElement extends Element {
+        @Override
+        void append(final StringBuilder builder, final LogEvent event) {
+            builder.append("Thread[").append(event.getThreadName()).append(',').append(event.getThreadPriority())
+                .append(',');
+            final String groupName = event.getThreadGroupName();
+            if (groupName != null) {
+                builder.append(groupName);
+            }
+            builder.append(']');
+        }
+    }
+
+    static final class ThreadNameElement extends Element {
+        @Override
+        void append(final StringBuilder builder, final LogEvent event) {
+            builder.append(event.getThreadName());
+        }
+    }
+
+    static final class ThreadIdElement extends Element {
+        @Override
+        void append(final StringBuilder builder, final LogEvent event) {
+            builder.append(event.getThreadId());
+        }
+    }
+
+    static final class MarkerElement extends Element {
+        @Override
+        void append(final StringBuilder builder, final LogEvent event) {
+            if (event.getMarker() != null) {
+                builder.append(event.getMarker());
+            }
+        }
+    }
+
+    static final class MdcElement extends Element {
+        private final String mKey;
+
+        /**
+         * @param key the MDC key, or null for all entries
+         */
+        MdcElement(final String key) {
+            mKey = key;
+        }
+
+        @Override
+        void append(final StringBuilder builder, final LogEvent event) {
+            if (mKey == null) {
+                appendAll(builder, event.getMdc());
+                return;
+            }
+            final String value = event.getMdcValue(mKey);
+            if (value != null) {
+                builder.append(value);
+            }
+        }
+
+        private static void appendAll(final StringBuilder builder, final Map<String, String> mdc) {
+            if (mdc == null) {
+                return;
+            }
+            boolean first = true;
+            for (final Map.Entry<String, String> entry : mdc.entrySet()) {
+                if (!first) {
+                    builder.append(", ");
+                }
+                builder.append(entry.getKey()).append('=').append(entry.getValue());
+                first = false;
+            }
+        }
+
+        @Override
+        boolean requiresMdc() {
+            return true;
+        }
+    }
+
+    static final class TimestampElement extends Element {
+        @Override
+        void append(final StringBuilder builder, final LogEvent event) {
+            builder.append(event.getTimestamp());
+        }
+    }
+
+    /**
+     * Appends the local time of day as {@code HH:mm:ss.SSS} without going through a date formatter.
+     */
+    static final class DateElement extends Element {
+        private static final long MILLIS_PER_DAY = 24L * 60 * 60 * 1000;
+
+        private final TimeZone mTimeZone;
+
+        DateElement(final TimeZone timeZone) {
+            mTimeZone = timeZone;
+        }
+
+        @Override
+        void append(final StringBuilder builder, final LogEvent event) {
+            final long timestamp = event.getTimestamp();
+            long millisOfDay = (timestamp + mTimeZone.getOffset(timestamp)) % MILLIS_PER_DAY;
+            if (millisOfDay < 0) {
+                millisOfDay += MILLIS_PER_DAY;
+            }
+            final int millis = (int) millisOfDay;
+            appendPadded(builder, millis / 3600000, 2);
+            builder.append(':');
+            appendPadded(builder, millis / 60000 % 60, 2);
+            builder.append(':');
+            appendPadded(builder, millis / 1000 % 60, 2);
+            builder.append('.');
+            appendPadded(builder, millis % 1000, 3);
+        }
+
+        private static void appendPadded(final StringBuilder builder, final int value, final int width) {
+            if (width == 3 && value < 100) {
+                builder.append('0');
+            }
+            if (value < 10) {
+                builder.append('0');
+            }
+            builder.append(value);
+        }
+    }
+}
@@ -0,0 +1,278 @@
+/*
+ * Copyright 2013 Philip Schiffer
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.psdev.slf4j.android.logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Circular buffer of length prefixed records in a memory-mapped file or a direct {@link ByteBuffer}.
+ * <p/>
+ * The buffer starts with a header holding the positions of the oldest record (tail) and the end of the newest
+ * record (head). Positions grow monotonically and are taken modulo the capacity. Records never wrap around,
+ * the rest of a lap that is too small for a record is skipped. Before a record is written, the tail is moved
+ * past the records it overwrites and stored, and after it has been written the head is stored. Since the
+ * mapping is shared with the page cache, the records survive when the process is killed and can be read by
+ * {@link MappedLogReader}, without any system call per record.
+ * <p/>
+ * Not thread safe.
+ */
+final class RingBuffer {
+
+    static final int MAGIC = 0x534c5242;
+    static final int VERSION = 1;
+
+    private static final int MAGIC_OFFSET = 0;
+    private static final int VERSION_OFFSET = 4;
+    private static final int CAPACITY_OFFSET = 8;
+    private static final int FORMAT_OFFSET = 12;
+    private static final int TAIL_OFFSET = 16;
+    private static final int HEAD_OFFSET = 24;
+    static final int HEADER_SIZE = 32;
+
+    private static final int LENGTH_SIZE = 4;
+    private static final int PADDING = -1;
+
+    private final ByteBuffer mBuffer;
+    private final int mCapacity;
+    private final int mFormat;
+    private long mTail;
+    private long mHead;
+
+    private RingBuffer(final ByteBuffer buffer, final int capacity, final int format, final long tail,
+                             final long head) {
+        mBuffer = buffer;
+        mCapacity = capacity;
+        mFormat = format;
+        mTail = tail;
+        mHead = head;
+    }
+
+    /**
+     * Open the given file for writing. Records of a previous run are kept if the file has the same capacity and
+     * format, otherwise the file is reinitialized.
+     *
+     * @param capacity size of the record area in bytes
+     * @param format   format of the records, stored in the header for the reader
+     */
+    static RingBuffer open(final File file, final int capacity, final int format) throws IOException {
+        final RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        try {
+            final FileChannel channel = randomAccessFile.getChannel();
+            final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + capacity);
+            final RingBuffer ring = fromHeader(buffer);
+            if (ring != null && ring.mCapacity == capacity && ring.mFormat == format) {
+                return ring;
+            }
+            buffer.putInt(MAGIC_OFFSET, MAGIC);
+            buffer.putInt(VERSION_OFFSET, VERSION);
+            buffer.putInt(CAPACITY_OFFSET, capacity);
+            buffer.putInt(FORMAT_OFFSET, format);
+            buffer.putLong(TAIL_OFFSET, 0);
+            buffer.putLong(HEAD_OFFSET, 0);
+            return new RingBuffer(buffer, capacity, format, 0, 0);
+        } finally {
+            // the mapping stays valid after the channel is closed
+            randomAccessFile.close();
+        }
+    }
+
+    /**
+     * Allocate an empty ring outside of the Java heap.
+     *
+     * @param capacity size of the record area in bytes
+     * @param format   format of the records
+     */
+    static RingBuffer allocateDirect(final int capacity, final int format) {
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(HEADER_SIZE + capacity);
+        buffer.putInt(MAGIC_OFFSET, MAGIC);
+        buffer.putInt(VERSION_OFFSET, VERSION);
+        buffer.putInt(CAPACITY_OFFSET, capacity);
+        buffer.putInt(FORMAT_OFFSET, format);
+        return new RingBuffer(buffer, capacity, format, 0, 0);
+    }
+
+    /**
+     * Open the given file for reading.
+     *
+     * @throws IOException if the file is not a valid ring buffer
+     */
+    static RingBuffer openForReading(final File file) throws IOException {
+        final RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try {
+            final FileChannel channel = randomAccessFile.getChannel();
+            final RingBuffer ring = fromHeader(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+            if (ring == null) {
+                throw new IOException("Not a log ring buffer: " + file);
+            }
+            return ring;
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    /**
+     * @return the ring described by the header of the given buffer, or null if the header is not valid
+     */
+    private static RingBuffer fromHeader(final ByteBuffer buffer) {
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(MAGIC_OFFSET) != MAGIC
+            || buffer.getInt(VERSION_OFFSET) != VERSION) {
+            return null;
+        }
+        final int capacity = buffer.getInt(CAPACITY_OFFSET);
+        final long tail = buffer.getLong(TAIL_OFFSET);
+        final long head = buffer.getLong(HEAD_OFFSET);
+        if (capacity <= 0 || buffer.capacity() < HEADER_SIZE + capacity || tail < 0 || head < tail
+            || head - tail > capacity) {
+            return null;
+        }
+        return new RingBuffer(buffer, capacity, buffer.getInt(FORMAT_OFFSET), tail, head);
+    }
+
+    /**
+     * @return a copy of this ring on the Java heap
+     */
+    RingBuffer copy() {
+        final ByteBuffer source = mBuffer.duplicate();
+        source.clear();
+        final ByteBuffer buffer = ByteBuffer.allocate(source.capacity());
+        buffer.put(source);
+        return new RingBuffer(buffer, mCapacity, mFormat, mTail, mHead);
+    }
+
+    /**
+     * @return the position of the oldest record
+     */
+    long getTail() {
+        return mTail;
+    }
+
+    /**
+     * @return the position after the newest record
+     */
+    long getHead() {
+        return mHead;
+    }
+
+    boolean isEmpty() {
+        return mHead == mTail;
+    }
+
+    /**
+     * Remove all records.
+     */
+    void clear() {
+        mTail = mHead;
+        mBuffer.putLong(TAIL_OFFSET, mTail);
+    }
+
+    int getFormat() {
+        return mFormat;
+    }
+
+    /**
+     * @return the maximum length of a record
+     */
+    int maxRecordLength() {
+        return mCapacity / 2 - LENGTH_SIZE;
+    }
+
+    /**
+     * Append a record, overwriting the oldest records if necessary.
+     *
+     * @param length length of the record, at most {@link #maxRecordLength()}
+     */
+    void append(final byte[] record, final int length) {
+        if (length > maxRecordLength()) {
+            throw new IllegalArgumentException("Record too long: " + length);
+        }
+        long start = mHead;
+        final int position = (int) (start % mCapacity);
+        if (mCapacity - position < LENGTH_SIZE + length) {
+            start += mCapacity - position;
+        }
+        final long end = start + LENGTH_SIZE + length;
+        while (end - mTail > mCapacity) {
+            mTail = next(mTail);
+        }
+        mBuffer.putLong(TAIL_OFFSET, mTail);
+        if (start != mHead && mCapacity - position >= LENGTH_SIZE) {
+            mBuffer.putInt(HEADER_SIZE + position, PADDING);
+        }
+        final int recordPosition = HEADER_SIZE + (int) (start % mCapacity);
+        mBuffer.putInt(recordPosition, length);
+        mBuffer.position(recordPosition + LENGTH_SIZE);
+        mBuffer.put(record, 0, length);
+        mHead = end;
+        mBuffer.putLong(HEAD_OFFSET, mHead);
+    }
+
+    /**
+     * @return all records from the oldest to the newest
+     */
+    List<byte[]> readRecords() {
+        final List<byte[]> records = new ArrayList<byte[]>();
+        long position = mTail;
+        while (position < mHead) {
+            final int offset = (int) (position % mCapacity);
+            final int length = mCapacity - offset < LENGTH_SIZE ? PADDING : mBuffer.getInt(HEADER_SIZE + offset);
+            if (length == PADDING) {
+                position += mCapacity - offset;
+                continue;
+            }
+            if (length < 0 || length > mCapacity - offset - LENGTH_SIZE) {
+                // corrupted, keep what was read so far
+                break;
+            }
+            final byte[] record = new byte[length];
+            mBuffer.position(HEADER_SIZE + offset + LENGTH_SIZE);
+            mBuffer.get(record);
+            records.add(record);
+            position += LENGTH_SIZE + length;
+        }
+        return records;
+    }
+
+    /**
+     * Write the mapped pages to the file.
+     */
+    void force() {
+        if (mBuffer instanceof MappedByteBuffer) {
+            ((MappedByteBuffer) mBuffer).force();
+        }
+    }
+
+    /**
+     * @return the position of the record after the one at the given position
+     */
+    private long next(final long position) {
+        final int offset = (int) (position % mCapacity);
+        if (mCapacity - offset < LENGTH_SIZE) {
+            return position + mCapacity - offset;
+        }
+        final int length = mBuffer.getInt(HEADER_SIZE + offset);
+        if (length == PADDING) {
+            return position + mCapacity - offset;
+        }
+        return position + LENGTH_SIZE + length;
+    }
+}
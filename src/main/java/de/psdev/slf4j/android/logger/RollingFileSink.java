@@ -0,0 +1,332 @@
+/*
+ * Copyright 2013 Philip Schiffer
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.psdev.slf4j.android.logger;
+
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * {@link LogSink} writing log lines to a file that is rolled over by size or time.
+ * <p/>
+ * Lines are collected in a buffer and written through a {@link FileChannel} when the buffer is full, when an
+ * error is logged, on roll over and on {@link #flush()}. A rolled file is renamed to the name of the active
+ * file plus the time of the roll over, and gzip compressed by a background thread with minimum priority.
+ * Afterwards the oldest rolled files are deleted until all files fit into the total size budget. If the active file
+ * cannot be renamed, writing continues to it and the roll over is retried after a minute.
+ */
+final class RollingFileSink implements LogSink {
+
+    static final String PATH_PROPERTY = "path";
+    static final String MAX_FILE_SIZE_PROPERTY = "maxFileSize";
+    static final String ROLL_INTERVAL_PROPERTY = "rollInterval";
+    static final String MAX_TOTAL_SIZE_PROPERTY = "maxTotalSize";
+    static final String COMPRESS_PROPERTY = "compress";
+    static final String BUFFER_SIZE_PROPERTY = "bufferSize";
+
+    static final long DEFAULT_MAX_FILE_SIZE = 1024 * 1024;
+    static final long DEFAULT_MAX_TOTAL_SIZE = 10 * 1024 * 1024;
+    static final int DEFAULT_BUFFER_SIZE = 8192;
+
+    static final String COMPRESSED_SUFFIX = ".gz";
+
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final String THREAD_NAME = "Slf4jAndroidLogger-Compress";
+    private static final String ROLL_DATE_PATTERN = "yyyyMMdd-HHmmss-SSS";
+    private static final long ROLL_RETRY_INTERVAL = 60 * 1000;
+
+    private final File mFile;
+    private final long mMaxFileSize;
+    private final long mRollInterval;
+    private final long mMaxTotalSize;
+    private final boolean mCompress;
+    private final ByteBuffer mBuffer;
+    private final ByteWriter mWriter = new ByteWriter(256);
+    private final ExecutorService mBackground;
+    private final SimpleDateFormat mDateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.", Locale.US);
+    private final SimpleDateFormat mRollDateFormat = new SimpleDateFormat(ROLL_DATE_PATTERN, Locale.US);
+
+    private FileOutputStream mOutput;
+    private FileChannel mChannel;
+    private long mFileSize;
+    private long mNextRollTime;
+    /**
+     * Time before which no roll over is attempted after the active file could not be renamed
+     */
+    private long mRollRetryTime;
+    private long mCachedSecond = Long.MIN_VALUE;
+    private String mCachedDate;
+
+    /**
+     * @param properties {@code path} of the active file, {@code maxFileSize} and {@code rollInterval} in
+     *                   milliseconds after which it is rolled over, {@code maxTotalSize} of all files,
+     *                   whether to {@code compress} rolled files and the {@code bufferSize}
+     */
+    public RollingFileSink(final Map<String, String> properties) throws IOException {
+        final String path = properties.get(PATH_PROPERTY);
+        if (path == null) {
+            throw new IllegalArgumentException("Missing property " + PATH_PROPERTY);
+        }
+        mFile = new File(path).getAbsoluteFile();
+        mMaxFileSize = LogSinks.getLongProperty(properties, MAX_FILE_SIZE_PROPERTY, DEFAULT_MAX_FILE_SIZE);
+        mRollInterval = LogSinks.getLongProperty(properties, ROLL_INTERVAL_PROPERTY, 0);
+        mMaxTotalSize = LogSinks.getLongProperty(properties, MAX_TOTAL_SIZE_PROPERTY, DEFAULT_MAX_TOTAL_SIZE);
+        mCompress = !"false".equalsIgnoreCase(properties.get(COMPRESS_PROPERTY));
+        mBuffer = ByteBuffer.allocate((int) LogSinks.getLongProperty(properties, BUFFER_SIZE_PROPERTY,
+            DEFAULT_BUFFER_SIZE));
+        final File parent = mFile.getParentFile();
+        if (!parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Could not create " + parent);
+        }
+        mBackground = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable runnable) {
+                final Thread thread = new Thread(runnable, THREAD_NAME);
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            }
+        });
+        open(System.currentTimeMillis());
+        // compress files left over from a previous run
+        mBackground.execute(new Housekeeping());
+    }
+
+    @Override
+    public synchronized void write(final LogEvent event) {
+        try {
+            final long timestamp = event.getTimestamp();
+            if (mRollInterval > 0 && timestamp >= mNextRollTime && mFileSize > 0 && timestamp >= mRollRetryTime) {
+                roll(timestamp);
+            }
+            encode(event);
+            if (mFileSize > 0 && mFileSize + mWriter.length() > mMaxFileSize && timestamp >= mRollRetryTime) {
+                roll(timestamp);
+            }
+            if (mWriter.length() > mBuffer.remaining()) {
+                writeBuffer();
+            }
+            if (mWriter.length() > mBuffer.capacity()) {
+                writeFully(ByteBuffer.wrap(mWriter.bytes(), 0, mWriter.length()));
+            } else {
+                mBuffer.put(mWriter.bytes(), 0, mWriter.length());
+            }
+            mFileSize += mWriter.length();
+            if (event.getLevel() == LogLevel.ERROR) {
+                writeBuffer();
+            }
+        } catch (final IOException e) {
+            throw new IllegalStateException("Could not write " + mFile, e);
+        }
+    }
+
+    @Override
+    public synchronized void flush() {
+        try {
+            writeBuffer();
+        } catch (final IOException e) {
+            throw new IllegalStateException("Could not write " + mFile, e);
+        }
+    }
+
+    /**
+     * Encode the line {@code yyyy-MM-dd HH:mm:ss.SSS LEVEL rendered message} and the stack trace.
+     */
+    private void encode(final LogEvent event) {
+        final long timestamp = event.getTimestamp();
+        final long second = timestamp / 1000;
+        if (second != mCachedSecond) {
+            mCachedSecond = second;
+            mCachedDate = mDateFormat.format(new Date(second * 1000));
+        }
+        final int millis = (int) (timestamp - second * 1000);
+        mWriter.reset();
+        mWriter.putUtf8(mCachedDate, Integer.MAX_VALUE);
+        mWriter.putByte('0' + millis / 100);
+        mWriter.putByte('0' + millis / 10 % 10);
+        mWriter.putByte('0' + millis % 10);
+        mWriter.putByte(' ');
+        mWriter.putUtf8(event.getLevel().name(), Integer.MAX_VALUE);
+        mWriter.putByte(' ');
+        mWriter.putUtf8(event.getRenderedMessage(), Integer.MAX_VALUE);
+        mWriter.putByte('\n');
+        if (event.getThrowable() != null) {
+            mWriter.putUtf8(Log.getStackTraceString(event.getThrowable()), Integer.MAX_VALUE);
+        }
+    }
+
+    private void open(final long now) throws IOException {
+        mOutput = new FileOutputStream(mFile, true);
+        mChannel = mOutput.getChannel();
+        mFileSize = mChannel.size();
+        mNextRollTime = mRollInterval > 0 ? now + mRollInterval : Long.MAX_VALUE;
+    }
+
+    private void roll(final long now) throws IOException {
+        writeBuffer();
+        mOutput.close();
+        File rolled = new File(mFile.getPath() + '.' + mRollDateFormat.format(new Date(now)));
+        for (int i = 1; rolled.exists() || new File(rolled.getPath() + COMPRESSED_SUFFIX).exists(); i++) {
+            rolled = new File(mFile.getPath() + '.' + mRollDateFormat.format(new Date(now)) + '-' + i);
+        }
+        final boolean renamed = mFile.renameTo(rolled);
+        open(now);
+        if (renamed) {
+            mBackground.execute(new Housekeeping());
+        } else {
+            mRollRetryTime = now + ROLL_RETRY_INTERVAL;
+            Log.w(AndroidLoggerAdapter.getLogTag(), "Could not rename " + mFile + " to " + rolled
+                + ", retrying in " + ROLL_RETRY_INTERVAL + " ms");
+        }
+    }
+
+    private void writeBuffer() throws IOException {
+        mBuffer.flip();
+        writeFully(mBuffer);
+        mBuffer.clear();
+    }
+
+    private void writeFully(final ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            mChannel.write(buffer);
+        }
+    }
+
+    /**
+     * Compresses the rolled files and deletes the oldest rolled files exceeding the total size budget.
+     */
+    private final class Housekeeping implements Runnable {
+
+        @Override
+        public void run() {
+            final File[] files = listRolledFiles();
+            if (mCompress) {
+                for (final File file : files) {
+                    if (!file.getName().endsWith(COMPRESSED_SUFFIX)) {
+                        compress(file);
+                    }
+                }
+            }
+            enforceBudget();
+        }
+
+        private File[] listRolledFiles() {
+            final String prefix = mFile.getName() + '.';
+            final File[] files = mFile.getParentFile().listFiles(new FilenameFilter() {
+                @Override
+                public boolean accept(final File dir, final String name) {
+                    return name.startsWith(prefix);
+                }
+            });
+            if (files == null) {
+                return new File[0];
+            }
+            int count = 0;
+            for (final File file : files) {
+                if (file.getName().endsWith(TEMP_SUFFIX)) {
+                    // left over from an interrupted compression
+                    file.delete();
+                } else {
+                    files[count++] = file;
+                }
+            }
+            final File[] rolled = Arrays.copyOf(files, count);
+            Arrays.sort(rolled, new Comparator<File>() {
+                @Override
+                public int compare(final File first, final File second) {
+                    return sortKey(first).compareTo(sortKey(second));
+                }
+            });
+            return rolled;
+        }
+
+        /**
+         * @return the name of the rolled file without compression suffix and with the counter of files rolled in
+         * the same millisecond padded, so the oldest file sorts first
+         */
+        private String sortKey(final File file) {
+            String name = file.getName();
+            if (name.endsWith(COMPRESSED_SUFFIX)) {
+                name = name.substring(0, name.length() - COMPRESSED_SUFFIX.length());
+            }
+            final int counter = mFile.getName().length() + 1 + ROLL_DATE_PATTERN.length();
+            if (name.length() > counter + 1 && name.charAt(counter) == '-') {
+                final String padded = "0000000000" + name.substring(counter + 1);
+                return name.substring(0, counter + 1) + padded.substring(padded.length() - 10);
+            }
+            return name;
+        }
+
+        private void compress(final File file) {
+            final File temp = new File(file.getPath() + COMPRESSED_SUFFIX + TEMP_SUFFIX);
+            try {
+                final InputStream input = new FileInputStream(file);
+                try {
+                    final OutputStream output = new GZIPOutputStream(new FileOutputStream(temp));
+                    try {
+                        final byte[] buffer = new byte[DEFAULT_BUFFER_SIZE];
+                        int read;
+                        while ((read = input.read(buffer)) != -1) {
+                            output.write(buffer, 0, read);
+                        }
+                    } finally {
+                        output.close();
+                    }
+                } finally {
+                    input.close();
+                }
+                if (temp.renameTo(new File(file.getPath() + COMPRESSED_SUFFIX))) {
+                    file.delete();
+                }
+            } catch (final IOException ignored) {
+                // keep the uncompressed file
+                temp.delete();
+            }
+        }
+
+        private void enforceBudget() {
+            final File[] files = listRolledFiles();
+            long total = mFile.length();
+            for (final File file : files) {
+                total += file.length();
+            }
+            for (int i = 0; i < files.length && total > mMaxTotalSize; i++) {
+                final long length = files[i].length();
+                if (files[i].delete()) {
+                    total -= length;
+                }
+            }
+        }
+    }
+}
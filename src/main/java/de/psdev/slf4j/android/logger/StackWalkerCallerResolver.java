@@ -0,0 +1,138 @@
+/*
+ * Copyright 2013 Philip Schiffer
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package de.psdev.slf4j.android.logger;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Iterator;
+
+/**
+ * {@link CallerResolver} backed by {@code java.lang.StackWalker}.
+ * <p/>
+ * Frames are walked lazily and the walk stops at the first matching frame, so only the frames up to the
+ * caller are ever materialized. The StackWalker API is accessed reflectively because it is not available
+ * on Android; use {@link #isSupported()} before instantiating this class. If the walk fails, the caller is looked
+ * up with a {@link ThrowableCallerResolver} instead.
+ */
+final class StackWalkerCallerResolver implements CallerResolver {
+
+    private static final Object WALKER;
+    private static final Method WALK;
+    private static final Method STREAM_ITERATOR;
+    private static final Method FRAME_GET_CLASS_NAME;
+    private static final Method FRAME_TO_STACK_TRACE_ELEMENT;
+    private static final Object WALK_FUNCTION;
+    private static final CallerResolver FALLBACK = new ThrowableCallerResolver();
+
+    private static final ThreadLocal<Query> QUERY = new ThreadLocal<Query>() {
+        @Override
+        protected Query initialValue() {
+            return new Query();
+        }
+    };
+
+    static {
+        Object walker = null;
+        Method walk = null;
+        Method streamIterator = null;
+        Method frameGetClassName = null;
+        Method frameToStackTraceElement = null;
+        Object walkFunction = null;
+        try {
+            final Class<?> walkerClass = Class.forName("java.lang.StackWalker");
+            final Class<?> frameClass = Class.forName("java.lang.StackWalker$StackFrame");
+            final Class<?> functionClass = Class.forName("java.util.function.Function");
+            walker = walkerClass.getMethod("getInstance").invoke(null);
+            walk = walkerClass.getMethod("walk", functionClass);
+            streamIterator = Class.forName("java.util.stream.BaseStream").getMethod("iterator");
+            frameGetClassName = frameClass.getMethod("getClassName");
+            frameToStackTraceElement = frameClass.getMethod("toStackTraceElement");
+            walkFunction = Proxy.newProxyInstance(StackWalkerCallerResolver.class.getClassLoader(),
+                new Class<?>[]{functionClass}, new WalkFunction());
+        } catch (final Exception ignored) {
+            // StackWalker is not available on this runtime
+            walker = null;
+        }
+        WALKER = walker;
+        WALK = walk;
+        STREAM_ITERATOR = streamIterator;
+        FRAME_GET_CLASS_NAME = frameGetClassName;
+        FRAME_TO_STACK_TRACE_ELEMENT = frameToStackTraceElement;
+        WALK_FUNCTION = walkFunction;
+    }
+
+    /**
+     * @return true if the current runtime provides {@code java.lang.StackWalker}
+     */
+    static boolean isSupported() {
+        return WALKER != null;
+    }
+
+    @Override
+    public StackTraceElement findCaller(final FrameMatcher frameMatcher, final int maxDepth) {
+        final Query query = QUERY.get();
+        query.mFrameMatcher = frameMatcher;
+        query.mMaxDepth = maxDepth;
+        try {
+            return (StackTraceElement) WALK.invoke(WALKER, WALK_FUNCTION);
+        } catch (final Exception e) {
+            // e.g. denied by a security manager
+            return FALLBACK.findCaller(frameMatcher, maxDepth);
+        } finally {
+            query.mFrameMatcher = null;
+        }
+    }
+
+    /**
+     * Parameters of the walk in progress on the current thread. The walk function is shared by all threads
+     * and reads its parameters from here, so a lookup does not need to allocate a new function.
+     */
+    private static final class Query {
+        FrameMatcher mFrameMatcher;
+        int mMaxDepth;
+    }
+
+    /**
+     * Implements {@code Function<Stream<StackFrame>, StackTraceElement>}.
+     */
+    private static final class WalkFunction implements InvocationHandler {
+
+        @Override
+        public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable {
+            if (!"apply".equals(method.getName())) {
+                if ("equals".equals(method.getName())) {
+                    return proxy == args[0];
+                }
+                if ("hashCode".equals(method.getName())) {
+                    return System.identityHashCode(proxy);
+                }
+                return "StackWalkerCallerResolver$WalkFunction";
+            }
+            final Query query = QUERY.get();
+            final Iterator<?> frames = (Iterator<?>) STREAM_ITERATOR.invoke(args[0], (Object[]) null);
+            for (int depth = 0; depth < query.mMaxDepth && frames.hasNext(); depth++) {
+                final Object frame = frames.next();
+                final String className = (String) FRAME_GET_CLASS_NAME.invoke(frame, (Object[]) null);
+                if (query.mFrameMatcher.matches(className)) {
+                    return FRAME_TO_STACK_TRACE_ELEMENT.invoke(frame, (Object[]) null);
+                }
+            }
+            return null;
+        }
+    }
+}
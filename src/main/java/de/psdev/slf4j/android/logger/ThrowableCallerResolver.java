@@ -0,0 +1,39 @@
+/*
+ * Copyright 2013 Philip Schiffer
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package de.psdev.slf4j.android.logger;
+
+/**
+ * {@link CallerResolver} that captures the stack through a {@link DetermineCallerException}.
+ * <p/>
+ * This works on every runtime, including Android, but the runtime always materializes the complete stack.
+ * Only the scan is bounded by {@code maxDepth}.
+ */
+final class ThrowableCallerResolver implements CallerResolver {
+
+    @Override
+    public StackTraceElement findCaller(final FrameMatcher frameMatcher, final int maxDepth) {
+        final StackTraceElement[] stackTrace = new DetermineCallerException().getStackTrace();
+        final int depth = Math.min(stackTrace.length, maxDepth);
+        for (int i = 0; i < depth; i++) {
+            final StackTraceElement element = stackTrace[i];
+            if (frameMatcher.matches(element.getClassName())) {
+                return element;
+            }
+        }
+        return null;
+    }
+}
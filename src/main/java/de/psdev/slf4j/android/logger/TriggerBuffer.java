@@ -0,0 +1,142 @@
+/*
+ * Copyright 2013 Philip Schiffer
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package de.psdev.slf4j.android.logger;
+
+/**
+ * Holds back events below the hold level in a bounded ring instead of writing them. An event at or above the
+ * trigger level releases the held events first, so a failure is written together with the messages that led
+ * to it while the steady state writes only the important messages.
+ * <p/>
+ * The ring either belongs to the logging thread, so a trigger only releases the context of its own thread, or
+ * is shared by all threads.
+ */
+final class TriggerBuffer {
+
+    static final int DEFAULT_SIZE = 128;
+
+    /**
+     * Which events share a ring.
+     */
+    enum Scope {
+        /**
+         * One ring per logging thread.
+         */
+        THREAD,
+        /**
+         * One ring for all threads.
+         */
+        GLOBAL;
+
+        static Scope fromString(final String value) {
+            if (value != null) {
+                for (final Scope scope : values()) {
+                    if (scope.name().equalsIgnoreCase(value.trim())) {
+                        return scope;
+                    }
+                }
+            }
+            return THREAD;
+        }
+    }
+
+    private static final LogEvent[] EMPTY = new LogEvent[0];
+
+    private final int mTriggerThreshold;
+    private final int mHoldThreshold;
+    private final Ring mGlobalRing;
+    private final ThreadLocal<Ring> mThreadRings;
+
+    /**
+     * @param triggerThreshold Android priority from which on events release the held events
+     * @param holdThreshold    Android priority below which events are held
+     * @param size             maximum number of held events, the oldest are discarded
+     */
+    TriggerBuffer(final int triggerThreshold, final int holdThreshold, final int size, final Scope scope) {
+        mTriggerThreshold = triggerThreshold;
+        mHoldThreshold = holdThreshold;
+        final int capacity = Math.max(size, 1);
+        if (scope == Scope.GLOBAL) {
+            mGlobalRing = new Ring(capacity);
+            mThreadRings = null;
+        } else {
+            mGlobalRing = null;
+            mThreadRings = new ThreadLocal<Ring>() {
+                @Override
+                protected Ring initialValue() {
+                    return new Ring(capacity);
+                }
+            };
+        }
+    }
+
+    boolean isHeld(final LogLevel level) {
+        return level.getAndroidLogLevel() < mHoldThreshold;
+    }
+
+    boolean isTrigger(final LogLevel level) {
+        return level.getAndroidLogLevel() >= mTriggerThreshold;
+    }
+
+    void hold(final LogEvent event) {
+        ring().add(event);
+    }
+
+    /**
+     * @return the held events from the oldest to the newest, the ring is empty afterwards
+     */
+    LogEvent[] release() {
+        return ring().removeAll();
+    }
+
+    private Ring ring() {
+        return mGlobalRing != null ? mGlobalRing : mThreadRings.get();
+    }
+
+    private static final class Ring {
+        private final LogEvent[] mEvents;
+        private int mNext;
+        private int mSize;
+
+        Ring(final int capacity) {
+            mEvents = new LogEvent[capacity];
+        }
+
+        synchronized void add(final LogEvent event) {
+            mEvents[mNext] = event;
+            mNext = (mNext + 1) % mEvents.length;
+            if (mSize < mEvents.length) {
+                mSize++;
+            }
+        }
+
+        synchronized LogEvent[] removeAll() {
+            if (mSize == 0) {
+                return EMPTY;
+            }
+            final LogEvent[] events = new LogEvent[mSize];
+            int index = (mNext - mSize + mEvents.length) % mEvents.length;
+            for (int i = 0; i < events.length; i++) {
+                events[i] = mEvents[index];
+                mEvents[index] = null;
+                index = (index + 1) % mEvents.length;
+            }
+            mSize = 0;
+            return events;
+        }
+    }
+}
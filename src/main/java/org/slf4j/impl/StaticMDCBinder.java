@@ -38,12 +38,12 @@
  */
 package org.slf4j.impl;
 
-import org.slf4j.helpers.BasicMDCAdapter;
+import de.psdev.slf4j.android.logger.AndroidMDCAdapter;
 import org.slf4j.spi.MDCAdapter;
 
 
 /**
- * This implementation is bound to {@link org.slf4j.helpers.BasicMDCAdapter}.
+ * This implementation is bound to {@link AndroidMDCAdapter}.
  *
  * @author Ceki G&uuml;lc&uuml;
  */
@@ -59,15 +59,15 @@ public final class StaticMDCBinder {
 
   /**
    * Currently this method always returns an instance of
-   * {@link org.slf4j.helpers.BasicMDCAdapter}.
+   * {@link AndroidMDCAdapter}.
    */
   public MDCAdapter getMDCA() {
     // note that this method is invoked only from within the static initializer of 
     // the org.slf4j.MDC class.
-    return new BasicMDCAdapter();
+    return new AndroidMDCAdapter();
   }
   
   public String getMDCAdapterClassStr() {
-    return BasicMDCAdapter.class.getName();
+    return AndroidMDCAdapter.class.getName();
   }
 }
@@ -38,8 +38,8 @@
  */
 package org.slf4j.impl;
 
+import de.psdev.slf4j.android.logger.AndroidMarkerFactory;
 import org.slf4j.IMarkerFactory;
-import org.slf4j.helpers.BasicMarkerFactory;
 import org.slf4j.spi.MarkerFactoryBinder;
 
 /**
@@ -56,7 +56,7 @@ public final class StaticMarkerBinder implements MarkerFactoryBinder {
    */
   public static final StaticMarkerBinder SINGLETON = new StaticMarkerBinder();
 
-  private final IMarkerFactory markerFactory = new BasicMarkerFactory();
+  private final IMarkerFactory markerFactory = new AndroidMarkerFactory();
 
   private StaticMarkerBinder() {
   }
@@ -72,7 +72,7 @@ public final class StaticMarkerBinder implements MarkerFactoryBinder {
 
   /**
    * Currently this method always returns an instance of
-   * {@link org.slf4j.helpers.BasicMarkerFactory}.
+   * {@link AndroidMarkerFactory}.
    */
   public IMarkerFactory getMarkerFactory() {
     return markerFactory;
@@ -80,9 +80,9 @@ public final class StaticMarkerBinder implements MarkerFactoryBinder {
 
   /**
    * Currently, this method returns the class name of
-   * {@link org.slf4j.helpers.BasicMarkerFactory}.
+   * {@link AndroidMarkerFactory}.
    */
   public String getMarkerFactoryClassStr() {
-    return BasicMarkerFactory.class.getName();
+    return AndroidMarkerFactory.class.getName();
   }
 }
@@ -17,6 +17,7 @@
 package de.psdev.slf4j.android.logger;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 
@@ -29,9 +30,13 @@ import org.robolectric.RobolectricTestRunner;
 import org.robolectric.annotation.Config;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.slf4j.MarkerFactory;
 
 import android.util.Log;
 
+import java.io.File;
+import java.io.FileOutputStream;
+
 @RunWith(RobolectricTestRunner.class)
 @Config(manifest = Config.NONE, shadows = { EnhancedShadowLog.class })
 public class AndroidLoggerAdapterTest {
@@ -276,6 +281,157 @@ public class AndroidLoggerAdapterTest {
             CoreMatchers.containsString("InnerClassTest"));
     }
 
+    @Test
+    public void testCallerCaptureDisabledForLogger() throws Exception {
+        LoggerFactory.getLogger("de.psdev.slf4j.android.logger.nocaller.Test").info("no caller");
+        assertEquals("should have logged 1 message", 1L, EnhancedShadowLog.getLogs().size());
+        assertThat("should not contain caller", EnhancedShadowLog.getLogs().get(0).msg,
+            CoreMatchers.startsWith("no caller Thread["));
+    }
+
+    @Test
+    public void testLongMessageIsSplit() throws Exception {
+        final StringBuilder message = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            message.append("line ").append(i).append(" ä€\n");
+        }
+        mLogger.info(message.toString());
+        final int count = EnhancedShadowLog.getLogs().size();
+        assertTrue("should have logged more than 1 message", count > 1);
+        for (int i = 0; i < count; i++) {
+            final EnhancedShadowLog.LogItem logItem = EnhancedShadowLog.getLogs().get(i);
+            assertEquals("should have correct type", Log.INFO, logItem.type);
+            assertThat("should be numbered", logItem.msg, CoreMatchers.startsWith("[" + (i + 1) + "/" + count + "] "));
+            assertTrue("should fit into a logcat record",
+                logItem.msg.getBytes("UTF-8").length <= LogcatSink.DEFAULT_MAX_MESSAGE_BYTES);
+        }
+        assertThat("should split at line breaks", EnhancedShadowLog.getLogs().get(1).msg,
+            CoreMatchers.containsString("] line "));
+    }
+
+    @Test
+    public void testLevelConfiguredForLoggerPrefix() throws Exception {
+        final Logger logger = LoggerFactory.getLogger("de.psdev.slf4j.android.logger.quiet.Test");
+        assertFalse("debug should be disabled", logger.isDebugEnabled());
+        assertTrue("warn should be enabled", logger.isWarnEnabled());
+        logger.info("quiet info");
+        logger.warn("quiet warning");
+        assertEquals("should have logged 1 message", 1L, EnhancedShadowLog.getLogs().size());
+        assertThat("should log warning", EnhancedShadowLog.getLogs().get(0).msg,
+            CoreMatchers.startsWith("quiet warning"));
+    }
+
+    @Test
+    public void testSetLogLevelUpdatesExistingLoggers() throws Exception {
+        try {
+            AndroidLoggerAdapter.setLogLevel(LogLevel.ERROR);
+            mLogger.warn("suppressed warning");
+            LoggerFactory.getLogger("de.psdev.slf4j.android.logger.quiet.Test").warn("quiet warning");
+            assertEquals("should have logged 1 message", 1L, EnhancedShadowLog.getLogs().size());
+            assertThat("configured level should be kept", EnhancedShadowLog.getLogs().get(0).msg,
+                CoreMatchers.startsWith("quiet warning"));
+        } finally {
+            AndroidLoggerAdapter.setLogLevel(LogLevel.TRACE);
+        }
+        assertTrue("trace should be enabled again", mLogger.isTraceEnabled());
+    }
+
+    @Test
+    public void testReloadConfigurationAppliesAndRevertsLevels() throws Exception {
+        final Logger quietLogger = LoggerFactory.getLogger("de.psdev.slf4j.android.logger.quiet.Test");
+        final File file = File.createTempFile("logger", ".properties");
+        try {
+            final FileOutputStream outputStream = new FileOutputStream(file);
+            outputStream.write(("de.psdev.slf4j.android.logger.defaultLogLevel=WARN\n"
+                + "de.psdev.slf4j.android.logger.level.de.psdev.slf4j.android.logger.quiet=DEBUG\n").getBytes("UTF-8"));
+            outputStream.close();
+            AndroidLoggerAdapter.reloadConfiguration(file);
+            assertEquals("should apply the default log level", LogLevel.WARN, AndroidLoggerAdapter.getLogLevel());
+            assertFalse("info should be disabled", mLogger.isInfoEnabled());
+            assertTrue("configured level should be applied", quietLogger.isDebugEnabled());
+            mLogger.info("suppressed info");
+            mLogger.warn("test reloaded warning");
+            assertLog(Log.WARN, "test reloaded warning");
+        } finally {
+            file.delete();
+            AndroidLoggerAdapter.reloadConfiguration(file);
+        }
+        assertEquals("should revert the default log level", LogLevel.TRACE, AndroidLoggerAdapter.getLogLevel());
+        assertTrue("trace should be enabled again", mLogger.isTraceEnabled());
+        assertFalse("configured level should be reverted", quietLogger.isDebugEnabled());
+    }
+
+    @Test
+    public void testIsLoggableAllowsTag() throws Exception {
+        EnhancedShadowLog.setLoggable("TestLogTag", Log.VERBOSE);
+        try {
+            AndroidLoggerAdapter.setHonorIsLoggable(true);
+            assertTrue("trace should be enabled", mLogger.isTraceEnabled());
+            mLogger.trace("test loggable trace");
+            assertLog(Log.VERBOSE, "test loggable trace");
+        } finally {
+            AndroidLoggerAdapter.setHonorIsLoggable(false);
+        }
+    }
+
+    @Test
+    public void testIsLoggableDisablesLevelsOfTag() throws Exception {
+        EnhancedShadowLog.setLoggable("TestLogTag", Log.WARN);
+        try {
+            AndroidLoggerAdapter.setHonorIsLoggable(true);
+            assertFalse("info should be disabled", mLogger.isInfoEnabled());
+            assertTrue("warn should be enabled", mLogger.isWarnEnabled());
+            mLogger.info("suppressed info");
+            mLogger.warn("test loggable warning");
+            assertLog(Log.WARN, "test loggable warning");
+        } finally {
+            AndroidLoggerAdapter.setHonorIsLoggable(false);
+        }
+        assertTrue("trace should be enabled again", mLogger.isTraceEnabled());
+    }
+
+    @Test
+    public void testIsLoggableIsRefreshed() throws Exception {
+        EnhancedShadowLog.setLoggable("TestLogTag", Log.WARN);
+        try {
+            AndroidLoggerAdapter.setHonorIsLoggable(true);
+            assertFalse("debug should be disabled", mLogger.isDebugEnabled());
+            EnhancedShadowLog.setLoggable("TestLogTag", Log.DEBUG);
+            assertFalse("should keep the cached threshold until refreshed", mLogger.isDebugEnabled());
+            AndroidLoggerAdapter.refreshIsLoggable();
+            assertTrue("debug should be enabled after refresh", mLogger.isDebugEnabled());
+            assertFalse("trace should still be disabled", mLogger.isTraceEnabled());
+        } finally {
+            AndroidLoggerAdapter.setHonorIsLoggable(false);
+        }
+    }
+
+    @Test
+    public void testMarker() throws Exception {
+        assertTrue("info should be enabled", mLogger.isInfoEnabled(MarkerFactory.getMarker("OTHER")));
+        assertFalse("denied marker should be disabled", mLogger.isErrorEnabled(MarkerFactory.getMarker("NOISY")));
+        mLogger.error(MarkerFactory.getMarker("NOISY"), "test noisy error");
+        mLogger.info(MarkerFactory.getMarker("OTHER"), "test info {}", "argument");
+        assertLog(Log.INFO, "test info argument");
+    }
+
+    @Test
+    public void testDumpRecentEvents() throws Exception {
+        final Exception exception = new Exception("test recorder exception");
+        mLogger.info("test recorder {} {}", "argument", 42);
+        mLogger.warn("test recorder warning", exception);
+        final StringBuilder dump = new StringBuilder();
+        AndroidLoggerAdapter.dumpRecentEvents(dump);
+        assertThat("should contain message", dump.toString(),
+            CoreMatchers.containsString(" INFO test recorder argument 42 Thread["));
+        assertThat("should contain throwable", dump.toString(),
+            CoreMatchers.containsString(" WARN test recorder warning"));
+        assertThat("should contain stack trace", dump.toString(),
+            CoreMatchers.containsString("test recorder exception"));
+        assertTrue("should keep the order", dump.lastIndexOf("test recorder argument 42")
+            < dump.lastIndexOf("test recorder warning"));
+    }
+
     @After
     public void tearDown() throws Exception {
         EnhancedShadowLog.reset();
@@ -287,9 +443,15 @@ public class AndroidLoggerAdapterTest {
         assertLog(expectedLogLevel, expectedContainedText, null);
     }
 
+    /**
+     * @param expectedThrowable the throwable whose stack trace is written with the message, it may be split into
+     *                          several records
+     */
     private static void assertLog(final int expectedLogLevel, final String expectedContainedText,
                                   final Throwable expectedThrowable) {
-        assertEquals("should have logged 1 message", 1L, EnhancedShadowLog.getLogs().size());
+        if (expectedThrowable == null) {
+            assertEquals("should have logged 1 message", 1L, EnhancedShadowLog.getLogs().size());
+        }
         final EnhancedShadowLog.LogItem logItem = EnhancedShadowLog.getLogs().get(0);
         assertEquals("should have correct type", expectedLogLevel, logItem.type);
         assertThat("should contain message", logItem.msg, CoreMatchers.containsString(expectedContainedText));
@@ -297,7 +459,13 @@ public class AndroidLoggerAdapterTest {
             AndroidLoggerAdapterTest.class.getSimpleName()));
         assertEquals("should have correct log tag", "TestLogTag", logItem.tag);
         if (expectedThrowable != null) {
-            assertEquals("should have logged the correct throwable", expectedThrowable, logItem.throwable);
+            final StringBuilder text = new StringBuilder();
+            for (final EnhancedShadowLog.LogItem item : EnhancedShadowLog.getLogs()) {
+                assertEquals("should have correct type", expectedLogLevel, item.type);
+                text.append(item.msg);
+            }
+            assertThat("should contain the stack trace", text.toString(),
+                CoreMatchers.containsString(expectedThrowable.toString()));
         }
     }
 
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2013 Philip Schiffer
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package de.psdev.slf4j.android.logger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class AndroidMDCAdapterTest {
+
+    private final AndroidMDCAdapter mAdapter = new AndroidMDCAdapter();
+
+    @Test
+    public void testPutGetRemove() throws Exception {
+        mAdapter.put("traceId", "abc");
+        mAdapter.put("user", "42");
+        mAdapter.put("traceId", "def");
+        assertEquals("should replace value", "def", mAdapter.get("traceId"));
+        assertEquals("should keep other value", "42", mAdapter.get("user"));
+        mAdapter.remove("traceId");
+        assertNull("should remove value", mAdapter.get("traceId"));
+        assertEquals("should keep other value after remove", "42", mAdapter.get("user"));
+        mAdapter.remove("user");
+        assertNull("should be empty", mAdapter.getContextMap());
+        mAdapter.put("user", "42");
+        mAdapter.clear();
+        assertNull("should be cleared", mAdapter.getCopyOfContextMap());
+    }
+
+    @Test
+    public void testContextMapIsSnapshot() throws Exception {
+        mAdapter.put("traceId", "abc");
+        final Map<String, String> snapshot = mAdapter.getContextMap();
+        mAdapter.put("traceId", "def");
+        mAdapter.put("user", "42");
+        assertEquals("should keep value of the snapshot", "abc", snapshot.get("traceId"));
+        assertEquals("should keep size of the snapshot", 1, snapshot.size());
+        final Map<String, String> copy = mAdapter.getCopyOfContextMap();
+        copy.put("traceId", "changed");
+        assertEquals("copy should not affect context", "def", mAdapter.get("traceId"));
+    }
+
+    @Test
+    public void testSetContextMap() throws Exception {
+        final Map<String, String> contextMap = new HashMap<String, String>();
+        contextMap.put("traceId", "abc");
+        contextMap.put("user", "42");
+        mAdapter.setContextMap(contextMap);
+        assertEquals("should have the entries", contextMap, mAdapter.getCopyOfContextMap());
+        mAdapter.setContextMap(new HashMap<String, String>());
+        assertNull("should be empty", mAdapter.getContextMap());
+    }
+
+    @Test
+    public void testChildThreadSharesContext() throws Exception {
+        mAdapter.put("traceId", "abc");
+        final Map<String, String> parentContext = mAdapter.getContextMap();
+        final AtomicReference<Map<String, String>> childContext = new AtomicReference<Map<String, String>>();
+        final Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                childContext.set(mAdapter.getContextMap());
+                mAdapter.put("traceId", "child");
+            }
+        });
+        thread.start();
+        thread.join();
+        assertSame("should share context without copy", parentContext, childContext.get());
+        assertEquals("child should not change parent context", "abc", mAdapter.get("traceId"));
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2013 Philip Schiffer
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package de.psdev.slf4j.android.logger;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.slf4j.Marker;
+
+public class AndroidMarkerTest {
+
+    @Test
+    public void testContainsReferences() throws Exception {
+        final AndroidMarkerFactory factory = new AndroidMarkerFactory();
+        final Marker audit = factory.getMarker("AUDIT");
+        final Marker login = factory.getMarker("LOGIN");
+        login.add(audit);
+        assertTrue("should contain itself", login.contains("LOGIN"));
+        assertTrue("should contain reference", login.contains(audit));
+        assertFalse("reference should not contain parent", audit.contains(login));
+        assertTrue("should match configured marker",
+            AndroidMarker.intersects(AndroidMarker.bitsOf(login), AndroidMarker.bitsOf("PERF, AUDIT")));
+        assertFalse("should not match other marker",
+            AndroidMarker.intersects(AndroidMarker.bitsOf(audit), AndroidMarker.bitsOf("PERF")));
+    }
+
+    @Test
+    public void testLaterReferenceChangesAreSeen() throws Exception {
+        final AndroidMarkerFactory factory = new AndroidMarkerFactory();
+        final Marker parent = factory.getMarker("PARENT");
+        final Marker child = factory.getMarker("CHILD");
+        parent.add(child);
+        assertFalse("should not contain grandchild yet", parent.contains("GRANDCHILD"));
+        child.add(factory.getMarker("GRANDCHILD"));
+        assertTrue("should contain grandchild", parent.contains("GRANDCHILD"));
+        child.remove(factory.getMarker("GRANDCHILD"));
+        assertFalse("should not contain removed grandchild", parent.contains("GRANDCHILD"));
+    }
+
+    @Test
+    public void testCyclicReferences() throws Exception {
+        final AndroidMarkerFactory factory = new AndroidMarkerFactory();
+        final Marker first = factory.getMarker("FIRST");
+        final Marker second = factory.getMarker("SECOND");
+        first.add(second);
+        second.add(first);
+        assertTrue("should contain reference", first.contains("SECOND"));
+        assertFalse("should not contain unknown marker", first.contains("UNKNOWN"));
+    }
+
+    @Test
+    public void testManyMarkers() throws Exception {
+        final AndroidMarkerFactory factory = new AndroidMarkerFactory();
+        final Marker parent = factory.getMarker("MANY");
+        for (int i = 0; i < 200; i++) {
+            parent.add(factory.getMarker("MANY" + i));
+        }
+        assertTrue("should contain marker beyond the first word", parent.contains("MANY199"));
+        assertTrue("should match marker beyond the first word",
+            AndroidMarker.intersects(AndroidMarker.bitsOf(parent), AndroidMarker.bitsOf("MANY150")));
+    }
+}
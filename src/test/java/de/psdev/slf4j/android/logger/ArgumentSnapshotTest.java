@@ -0,0 +1,96 @@
+/*
+ * Copyright 2013 Philip Schiffer
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package de.psdev.slf4j.android.logger;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class ArgumentSnapshotTest {
+
+    @Test
+    public void testImmutableArgumentsAreKept() throws Exception {
+        final Object[] arguments = {"text", 42, 1.5d, true, 'c', LogLevel.INFO, null};
+        assertSame("should not copy immutable arguments", arguments, ArgumentSnapshot.IMMUTABLE.snapshot(arguments));
+    }
+
+    @Test
+    public void testMutableArgumentsAreReplacedByTheirText() throws Exception {
+        final List<String> list = new ArrayList<String>();
+        list.add("a");
+        final Object[] arguments = {"text", list, new int[]{1, 2}};
+        final Object[] snapshot = ArgumentSnapshot.IMMUTABLE.snapshot(arguments);
+        list.add("b");
+        assertSame("should leave the caller's array untouched", list, arguments[1]);
+        assertEquals("should keep immutable argument", "text", snapshot[0]);
+        assertEquals("should keep text of the list", "[a]", snapshot[1]);
+        assertEquals("should keep text of the array", "[1, 2]", snapshot[2]);
+    }
+
+    @Test
+    public void testEventFormatsMessageOnFirstUse() throws Exception {
+        final List<String> list = new ArrayList<String>();
+        final LogEvent event = new LogEvent("logger", LogLevel.INFO, "list {}", new Object[]{list}, null, null,
+            Thread.currentThread(), 0L, null);
+        list.add("a");
+        assertEquals("should format with the current value", "list [a]", event.getMessage());
+        list.add("b");
+        assertEquals("should cache the message", "list [a]", event.getMessage());
+    }
+
+    @Test
+    public void testSnapshotKeepsElementsAfterCount() throws Exception {
+        final Exception exception = new Exception();
+        final Object[] arguments = {new StringBuilder("a"), exception};
+        final Object[] snapshot = ArgumentSnapshot.IMMUTABLE.snapshot(arguments, 1);
+        assertEquals("should keep text of the argument", "a", snapshot[0]);
+        assertSame("should keep the throwable", exception, snapshot[1]);
+        assertEquals("should keep text of a single argument", "a",
+            ArgumentSnapshot.IMMUTABLE.snapshot(new StringBuilder("a")));
+    }
+
+    @Test
+    public void testEventWithoutArray() throws Exception {
+        final LogEvent event = new LogEvent("logger", LogLevel.INFO, null, "{} and {}", "a", 1, null, 2, null, null,
+            Thread.currentThread(), 0L, null);
+        assertEquals("should format both arguments", "a and 1", event.getMessage());
+        assertEquals("should count the arguments", 2, event.getArgumentCount());
+        assertArrayEquals("should create the array on demand", new Object[]{"a", 1}, event.getArguments());
+    }
+
+    @Test
+    public void testEventWithTrailingThrowable() throws Exception {
+        final Exception exception = new Exception();
+        final Object[] arguments = {"a", "b", "c", exception};
+        final LogEvent event = new LogEvent("logger", LogLevel.INFO, null, "{} {} {} {}", null, null, arguments, 3,
+            exception, null, Thread.currentThread(), 0L, null);
+        assertEquals("should format without the throwable", "a b c {}", event.getMessage());
+        assertArrayEquals("should leave out the throwable", new Object[]{"a", "b", "c"}, event.getArguments());
+    }
+
+    @Test
+    public void testFromString() throws Exception {
+        assertEquals("should ignore case", ArgumentSnapshot.MESSAGE, ArgumentSnapshot.fromString(" message"));
+        assertEquals("should default to immutable", ArgumentSnapshot.IMMUTABLE, ArgumentSnapshot.fromString(null));
+    }
+}
@@ -0,0 +1,236 @@
+/*
+ * Copyright 2013 Philip Schiffer
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package de.psdev.slf4j.android.logger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Test;
+
+import android.util.Log;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class AsyncLogDispatcherTest {
+
+    private final GatedSink mSink = new GatedSink();
+
+    @After
+    public void tearDown() throws Exception {
+        // never leave a worker blocked, the shutdown hook drains the queue
+        mSink.mGate.countDown();
+    }
+
+    @Test
+    public void testBlockWaitsForRoom() throws Exception {
+        final AsyncLogDispatcher dispatcher = fillQueue(AsyncLogDispatcher.OverflowPolicy.BLOCK, LoggerLevelMap.OFF);
+        final Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                dispatcher.dispatch(event(LogLevel.INFO, "3"));
+            }
+        });
+        thread.start();
+        thread.join(200);
+        assertTrue("should wait while the queue is full", thread.isAlive());
+        mSink.mGate.countDown();
+        thread.join();
+        dispatcher.drain();
+        assertEquals("should write every event in order", "[0, 1, 2, 3]", mSink.getMessages().toString());
+        assertEquals("should drop nothing", 0, dispatcher.getDroppedCount(LogLevel.INFO));
+    }
+
+    @Test
+    public void testDropNewest() throws Exception {
+        final AsyncLogDispatcher dispatcher = fillQueue(AsyncLogDispatcher.OverflowPolicy.DROP_NEWEST,
+            LoggerLevelMap.OFF);
+        dispatcher.dispatch(event(LogLevel.INFO, "3"));
+        assertEquals("should count the dropped event", 1, dispatcher.getDroppedCount(LogLevel.INFO));
+        mSink.mGate.countDown();
+        dispatcher.drain();
+        assertEquals("should drop the new event", "[0, 1, 2]", mSink.getMessages().toString());
+    }
+
+    @Test
+    public void testDropOldest() throws Exception {
+        final AsyncLogDispatcher dispatcher = fillQueue(AsyncLogDispatcher.OverflowPolicy.DROP_OLDEST,
+            LoggerLevelMap.OFF);
+        dispatcher.dispatch(event(LogLevel.WARN, "3"));
+        assertEquals("should count the dropped event by its level", 1, dispatcher.getDroppedCount(LogLevel.INFO));
+        assertEquals("should not count the new event", 0, dispatcher.getDroppedCount(LogLevel.WARN));
+        mSink.mGate.countDown();
+        dispatcher.drain();
+        assertEquals("should drop the oldest queued event", "[0, 2, 3]", mSink.getMessages().toString());
+    }
+
+    @Test
+    public void testDropBelow() throws Exception {
+        final AsyncLogDispatcher dispatcher = fillQueue(AsyncLogDispatcher.OverflowPolicy.DROP_BELOW,
+            LoggerLevelMap.OFF);
+        dispatcher.dispatch(event(LogLevel.INFO, "3"));
+        dispatcher.dispatch(event(LogLevel.WARN, "4"));
+        assertEquals("should count the event below the overflow level", 1,
+            dispatcher.getDroppedCount(LogLevel.INFO));
+        assertEquals("should write the event at the overflow level right away", "[0, 4]",
+            mSink.getMessages().toString());
+        assertSame("should write on the logging thread", Thread.currentThread(), mSink.getThreads().get(1));
+        mSink.mGate.countDown();
+        dispatcher.drain();
+        assertEquals("should write the queued events", "[0, 4, 1, 2]", mSink.getMessages().toString());
+    }
+
+    @Test
+    public void testSync() throws Exception {
+        final AsyncLogDispatcher dispatcher = fillQueue(AsyncLogDispatcher.OverflowPolicy.SYNC, LoggerLevelMap.OFF);
+        dispatcher.dispatch(event(LogLevel.INFO, "3"));
+        assertEquals("should write the event right away", "[0, 3]", mSink.getMessages().toString());
+        assertSame("should write on the logging thread", Thread.currentThread(), mSink.getThreads().get(1));
+        mSink.mGate.countDown();
+        dispatcher.drain();
+        assertEquals("should drop nothing", "[0, 3, 1, 2]", mSink.getMessages().toString());
+    }
+
+    @Test
+    public void testDropReport() throws Exception {
+        final AsyncLogDispatcher dispatcher = fillQueue(AsyncLogDispatcher.OverflowPolicy.DROP_NEWEST,
+            LoggerLevelMap.OFF);
+        dispatcher.dispatch(event(LogLevel.INFO, "3"));
+        dispatcher.dispatch(event(LogLevel.DEBUG, "4"));
+        dispatcher.dispatch(event(LogLevel.INFO, "5"));
+        mSink.mGate.countDown();
+        dispatcher.drain();
+        dispatcher.reportDropped(false);
+        assertEquals("should not report before the interval passed", 3, mSink.getMessages().size());
+        dispatcher.reportDropped(true);
+        final List<String> messages = mSink.getMessages();
+        assertEquals("should report the dropped events per level",
+            "3 events dropped, async log queue was full (DEBUG=1, INFO=2)", messages.get(messages.size() - 1));
+        assertEquals("should reset the counters", 0, dispatcher.getDroppedCount(LogLevel.INFO));
+        dispatcher.reportDropped(true);
+        assertEquals("should not report without dropped events", messages.size(), mSink.getMessages().size());
+    }
+
+    @Test
+    public void testBypassLevel() throws Exception {
+        final AsyncLogDispatcher dispatcher = fillQueue(AsyncLogDispatcher.OverflowPolicy.BLOCK, Log.ERROR);
+        dispatcher.dispatch(event(LogLevel.ERROR, "3"));
+        assertEquals("should write the event ahead of the queue", "[0, 3]", mSink.getMessages().toString());
+        assertSame("should write on the logging thread", Thread.currentThread(), mSink.getThreads().get(1));
+    }
+
+    @Test
+    public void testContextOfBypassingEvent() throws Exception {
+        final AsyncLogDispatcher dispatcher = fillQueue(AsyncLogDispatcher.OverflowPolicy.BLOCK, Log.ERROR);
+        dispatcher.dispatch(new LogEvent[]{event(LogLevel.DEBUG, "a"), event(LogLevel.DEBUG, "b")},
+            event(LogLevel.ERROR, "3"));
+        assertEquals("should write the context before the bypassing event", "[0, a, b, 3]",
+            mSink.getMessages().toString());
+        mSink.mGate.countDown();
+        dispatcher.drain();
+        assertEquals("should write the queued events afterwards", "[0, a, b, 3, 1, 2]",
+            mSink.getMessages().toString());
+    }
+
+    @Test
+    public void testContextOfQueuedEvent() throws Exception {
+        final AsyncLogDispatcher dispatcher = fillQueue(AsyncLogDispatcher.OverflowPolicy.BLOCK, Log.ERROR);
+        mSink.mGate.countDown();
+        dispatcher.dispatch(new LogEvent[]{event(LogLevel.DEBUG, "a")}, event(LogLevel.WARN, "3"));
+        dispatcher.drain();
+        assertEquals("should queue the context before the event", "[0, 1, 2, a, 3]", mSink.getMessages().toString());
+    }
+
+    @Test
+    public void testOrderPerThread() throws Exception {
+        mSink.mGate.countDown();
+        final AsyncLogDispatcher dispatcher = new AsyncLogDispatcher(16, AsyncLogDispatcher.OverflowPolicy.BLOCK,
+            LogLevel.WARN, Long.MAX_VALUE, LoggerLevelMap.OFF, mSink);
+        final int eventsPerThread = 1000;
+        final Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            final String prefix = String.valueOf(i);
+            threads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < eventsPerThread; j++) {
+                        dispatcher.dispatch(event(LogLevel.INFO, prefix + ":" + j));
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+        dispatcher.drain();
+        final int[] next = new int[threads.length];
+        for (final String message : mSink.getMessages()) {
+            final int separator = message.indexOf(':');
+            final int thread = Integer.parseInt(message.substring(0, separator));
+            assertEquals("should keep the order of each thread", next[thread]++,
+                Integer.parseInt(message.substring(separator + 1)));
+        }
+        for (final int count : next) {
+            assertEquals("should write every event", eventsPerThread, count);
+        }
+    }
+
+    // Helper
+
+    /**
+     * @return a dispatcher with a queue of two events, both taken, and its worker blocked writing the event "0"
+     */
+    private AsyncLogDispatcher fillQueue(final AsyncLogDispatcher.OverflowPolicy policy, final int bypassThreshold)
+        throws InterruptedException {
+        final AsyncLogDispatcher dispatcher = new AsyncLogDispatcher(2, policy, LogLevel.WARN, Long.MAX_VALUE,
+            bypassThreshold, mSink);
+        dispatcher.dispatch(event(LogLevel.INFO, "0"));
+        assertTrue("should write the first event", mSink.mBlocked.await(5, TimeUnit.SECONDS));
+        dispatcher.dispatch(event(LogLevel.INFO, "1"));
+        dispatcher.dispatch(event(LogLevel.INFO, "2"));
+        return dispatcher;
+    }
+
+    private static LogEvent event(final LogLevel level, final String message) {
+        return new LogEvent("logger", level, message, null, null, Thread.currentThread(), 0L, null);
+    }
+
+    /**
+     * Blocks the worker thread in its first write until the gate opens.
+     */
+    private static class GatedSink extends RecordingSink {
+        final CountDownLatch mGate = new CountDownLatch(1);
+        final CountDownLatch mBlocked = new CountDownLatch(1);
+
+        @Override
+        public void write(final LogEvent event) {
+            super.write(event);
+            if (mBlocked.getCount() > 0 && mGate.getCount() > 0) {
+                mBlocked.countDown();
+                try {
+                    mGate.await();
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+}
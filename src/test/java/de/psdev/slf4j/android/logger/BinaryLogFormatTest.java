@@ -0,0 +1,122 @@
+/*
+ * Copyright 2013 Philip Schiffer
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.psdev.slf4j.android.logger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+
+public class BinaryLogFormatTest {
+
+    private static final StackTraceElement CALLER = new StackTraceElement("com.acme.Sync", "run", "Sync.java", 42);
+
+    private final Thread mThread = new Thread(new ThreadGroup("group"), "worker");
+    private final BinaryLogFormat.Encoder mEncoder = new BinaryLogFormat.Encoder(16);
+    private final ByteWriter mOut = new ByteWriter(64);
+    private final ByteWriter mDictionary = new ByteWriter(64);
+
+    @Test
+    public void testDecodedEventRendersLikeOriginal() throws Exception {
+        final Object[] arguments = {1, 2L, 0.1, 0.1f, true, 'c', null, new int[]{1, 2}, "text"};
+        final String pattern = "{} {} {} {} {} {} {} {} {} \\{}";
+        final LogEvent event = new LogEvent("com.acme.Sync", LogLevel.WARN, pattern, arguments, null,
+            CALLER, mThread, 1234L,
+            Collections.singletonMap("traceId", "abc"));
+        mEncoder.encode(event, "stack trace", mOut, mDictionary);
+
+        final LogEvent decoded = decode();
+        final PatternLayout layout = PatternLayout.compile(PatternLayout.DEFAULT_PATTERN + " %X{traceId} %timestamp");
+        assertEquals("should decode the same message", event.getMessage(), decoded.getMessage());
+        assertEquals("should render the same line", layout.format(event), layout.format(decoded));
+        assertEquals("should decode level", LogLevel.WARN, decoded.getLevel());
+        assertEquals("should decode logger name", "com.acme.Sync", decoded.getLoggerName());
+        assertEquals("should decode stack trace", "stack trace", decoded.getDecodedStackTrace());
+    }
+
+    @Test
+    public void testEventWithoutCallerAndArguments() throws Exception {
+        mEncoder.encode(new LogEvent("com.acme.Sync", LogLevel.INFO, "plain {}", null, null, mThread, 0L, null), null,
+            mOut, mDictionary);
+        final LogEvent decoded = decode();
+        assertEquals("should not format message without arguments", "plain {}", decoded.getMessage());
+        assertNull("should not have caller", decoded.getCaller());
+        assertNull("should not have stack trace", decoded.getDecodedStackTrace());
+    }
+
+    @Test
+    public void testStringsAreWrittenToDictionaryOnce() throws Exception {
+        final LogEvent event = new LogEvent("com.acme.Logger", LogLevel.INFO, "message", null, CALLER, mThread, 0L,
+            null);
+        mEncoder.encode(event, null, mOut, mDictionary);
+        final int firstLength = mOut.length();
+        final int dictionaryLength = mDictionary.length();
+        mEncoder.encode(event, null, mOut, mDictionary);
+        assertEquals("should not add strings again", dictionaryLength, mDictionary.length());
+        assertEquals("should encode the same event to the same size", firstLength, mOut.length() - firstLength);
+        assertEquals("should intern logger, message, class, method, thread and group", 6,
+            BinaryLogFormat.readDictionary(mDictionary.bytes(), mDictionary.length()).size());
+    }
+
+    @Test
+    public void testFullDictionaryWritesInline() throws Exception {
+        final BinaryLogFormat.Encoder encoder = new BinaryLogFormat.Encoder(0);
+        encoder.encode(new LogEvent("com.acme.Sync", LogLevel.INFO, "message", null, CALLER, mThread, 0L, null),
+            null, mOut, mDictionary);
+        assertEquals("should not write dictionary", 0, mDictionary.length());
+        assertEquals("should decode inline strings", "message", decode().getMessage());
+    }
+
+    @Test
+    public void testFullDictionaryIsRecycled() throws Exception {
+        // room for the logger name only
+        final BinaryLogFormat.Encoder encoder = new BinaryLogFormat.Encoder(16, 20);
+        final LogEvent event = new LogEvent("com.acme.Logger", LogLevel.INFO, "message", null, null, mThread, 0L,
+            null);
+        encoder.encode(event, null, mOut, mDictionary);
+        assertEquals("should stop at the size limit", 1,
+            BinaryLogFormat.readDictionary(mDictionary.bytes(), mDictionary.length()).size());
+        assertFalse("should keep the dictionary of the records in the ring", encoder.recycle(0, 100));
+
+        final ByteWriter out = new ByteWriter(64);
+        final ByteWriter dictionary = new ByteWriter(64);
+        encoder.encode(event, null, out, dictionary);
+        assertEquals("should write all strings inline", 0, dictionary.length());
+        assertEquals("should decode without dictionary", "message", new BinaryLogFormat.Decoder(
+            Collections.<String>emptyList()).decode(out.bytes(), out.length()).getMessage());
+        assertFalse("should wait until the referencing records are overwritten", encoder.recycle(99, 200));
+        assertTrue("should start a new dictionary", encoder.recycle(100, 200));
+
+        mOut.reset();
+        mDictionary.reset();
+        encoder.encode(event, null, mOut, mDictionary);
+        assertEquals("should intern again", 1,
+            BinaryLogFormat.readDictionary(mDictionary.bytes(), mDictionary.length()).size());
+        assertEquals("should decode with the new dictionary", "com.acme.Logger", decode().getLoggerName());
+    }
+
+    // Helper
+
+    private LogEvent decode() {
+        final List<String> dictionary = BinaryLogFormat.readDictionary(mDictionary.bytes(), mDictionary.length());
+        return new BinaryLogFormat.Decoder(dictionary).decode(mOut.bytes(), mOut.length());
+    }
+}
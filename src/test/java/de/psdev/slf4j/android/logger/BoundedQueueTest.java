@@ -0,0 +1,91 @@
+/*
+ * Copyright 2013 Philip Schiffer
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package de.psdev.slf4j.android.logger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+
+public class BoundedQueueTest {
+
+    @Test
+    public void testCapacityIsRoundedUp() throws Exception {
+        assertEquals("should round up to power of two", 8, new BoundedQueue<Object>(5).capacity());
+    }
+
+    @Test
+    public void testOfferAndPoll() throws Exception {
+        final BoundedQueue<Integer> queue = new BoundedQueue<Integer>(4);
+        assertTrue("should be empty", queue.isEmpty());
+        for (int i = 0; i < 4; i++) {
+            assertTrue("should accept element " + i, queue.offer(i));
+        }
+        assertFalse("should reject element when full", queue.offer(4));
+        for (int i = 0; i < 4; i++) {
+            assertEquals("should poll in order", Integer.valueOf(i), queue.poll());
+        }
+        assertNull("should be empty after polling everything", queue.poll());
+        assertTrue("should accept elements again", queue.offer(5));
+        assertEquals("should poll new element", Integer.valueOf(5), queue.poll());
+    }
+
+    @Test
+    public void testConcurrentProducersKeepOrderPerThread() throws Exception {
+        final int producers = 4;
+        final int perProducer = 50000;
+        final BoundedQueue<int[]> queue = new BoundedQueue<int[]>(64);
+        final CountDownLatch start = new CountDownLatch(1);
+        for (int p = 0; p < producers; p++) {
+            final int producer = p;
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (final InterruptedException e) {
+                        return;
+                    }
+                    for (int i = 0; i < perProducer; i++) {
+                        final int[] element = {producer, i};
+                        while (!queue.offer(element)) {
+                            Thread.yield();
+                        }
+                    }
+                }
+            }).start();
+        }
+        start.countDown();
+        final int[] next = new int[producers];
+        int received = 0;
+        while (received < producers * perProducer) {
+            final int[] element = queue.poll();
+            if (element == null) {
+                Thread.yield();
+                continue;
+            }
+            assertEquals("should receive elements of a producer in order", next[element[0]], element[1]);
+            next[element[0]]++;
+            received++;
+        }
+        assertTrue("should be empty", queue.isEmpty());
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2013 Philip Schiffer
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package de.psdev.slf4j.android.logger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class CallerResolversTest {
+
+    @Test
+    public void testCreate() throws Exception {
+        final Class<?> defaultType = StackWalkerCallerResolver.isSupported()
+            ? StackWalkerCallerResolver.class : ThrowableCallerResolver.class;
+        assertEquals("should default to the best resolver", defaultType, CallerResolvers.create(null).getClass());
+        assertEquals("should create auto", defaultType, CallerResolvers.create("AUTO").getClass());
+        assertEquals("should only use stackwalker where supported", defaultType,
+            CallerResolvers.create("stackwalker").getClass());
+        assertEquals("should create throwable", ThrowableCallerResolver.class,
+            CallerResolvers.create("throwable").getClass());
+    }
+
+    @Test
+    public void testCreateByClassName() throws Exception {
+        assertTrue("should instantiate custom resolver",
+            CallerResolvers.create(FixedCallerResolver.class.getName()) instanceof FixedCallerResolver);
+        assertEquals("should fall back for unknown classes", CallerResolvers.create(null).getClass(),
+            CallerResolvers.create("com.acme.Unknown").getClass());
+        assertEquals("should fall back for classes that are no resolver", CallerResolvers.create(null).getClass(),
+            CallerResolvers.create(String.class.getName()).getClass());
+    }
+
+    public static class FixedCallerResolver implements CallerResolver {
+        @Override
+        public StackTraceElement findCaller(final FrameMatcher frameMatcher, final int maxDepth) {
+            return null;
+        }
+    }
+}
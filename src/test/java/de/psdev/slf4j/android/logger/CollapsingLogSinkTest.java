@@ -0,0 +1,117 @@
+/*
+ * Copyright 2013 Philip Schiffer
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package de.psdev.slf4j.android.logger;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class CollapsingLogSinkTest {
+
+    @Test
+    public void testRepetitionsAreSummarized() throws Exception {
+        final RecordingSink recording = new RecordingSink();
+        final CollapsingLogSink sink = new CollapsingLogSink(recording, CollapsingLogSink.DEFAULT_TIMEOUT);
+        for (int i = 0; i < 5; i++) {
+            sink.write(event("com.acme.Test", "value {}", 42));
+        }
+        assertEquals("should write only the first event", 1, recording.getEvents().size());
+        sink.write(event("com.acme.Test", "value {}", 43));
+        assertEquals("should write summary and different event", 3, recording.getEvents().size());
+        assertEquals("should count repetitions", "Last message repeated 4 times",
+            recording.getEvents().get(1).getMessage());
+        assertEquals("should write different event", "value 43", recording.getEvents().get(2).getMessage());
+    }
+
+    @Test
+    public void testRunsArePerLogger() throws Exception {
+        final RecordingSink recording = new RecordingSink();
+        final CollapsingLogSink sink = new CollapsingLogSink(recording, CollapsingLogSink.DEFAULT_TIMEOUT);
+        for (int i = 0; i < 3; i++) {
+            sink.write(event("com.acme.First", "message", null));
+            sink.write(event("com.acme.Second", "message", null));
+        }
+        assertEquals("should write the first event of each logger", 2, recording.getEvents().size());
+        sink.flush();
+        assertEquals("should write a summary per logger on flush", 4, recording.getEvents().size());
+        assertEquals("should flush the sink", 1, recording.getFlushes());
+    }
+
+    @Test
+    public void testExpiredRunsAreSummarized() throws Exception {
+        final RecordingSink recording = new RecordingSink();
+        final CollapsingLogSink sink = new CollapsingLogSink(recording, 0);
+        sink.write(event("com.acme.Test", "message", null));
+        sink.write(event("com.acme.Test", "message", null));
+        sink.flushExpired();
+        assertEquals("should write summary", 2, recording.getEvents().size());
+        assertEquals("should count repetitions", "Last message repeated 1 time",
+            recording.getEvents().get(1).getMessage());
+        sink.write(event("com.acme.Test", "message", null));
+        sink.flushExpired();
+        assertEquals("should keep collapsing after the summary", 3, recording.getEvents().size());
+    }
+
+    @Test
+    public void testMutatedArgumentIsNotCollapsed() throws Exception {
+        final RecordingSink recording = new RecordingSink();
+        final CollapsingLogSink sink = new CollapsingLogSink(recording, CollapsingLogSink.DEFAULT_TIMEOUT);
+        final StringBuilder argument = new StringBuilder("first");
+        sink.write(event("com.acme.Test", "value {}", argument));
+        argument.setLength(0);
+        argument.append("second");
+        sink.write(event("com.acme.Test", "value {}", argument));
+        assertEquals("should write both events", 2, recording.getEvents().size());
+    }
+
+    @Test
+    public void testEventsWithoutCallerAreCollapsedByPattern() throws Exception {
+        final RecordingSink recording = new RecordingSink();
+        final CollapsingLogSink sink = new CollapsingLogSink(recording, CollapsingLogSink.DEFAULT_TIMEOUT);
+        for (int i = 0; i < 3; i++) {
+            sink.write(event("com.acme.Test", "message", null, null));
+        }
+        assertEquals("should write only the first event", 1, recording.getEvents().size());
+        sink.write(event("com.acme.Test", "other message", null, null));
+        assertEquals("should write summary and different event", 3, recording.getEvents().size());
+    }
+
+    @Test
+    public void testCallersAreNotCollapsed() throws Exception {
+        final RecordingSink recording = new RecordingSink();
+        final CollapsingLogSink sink = new CollapsingLogSink(recording, CollapsingLogSink.DEFAULT_TIMEOUT);
+        sink.write(event("com.acme.Test", "message", null, caller(1)));
+        sink.write(event("com.acme.Test", "message", null, caller(2)));
+        assertEquals("should write events of different callers", 2, recording.getEvents().size());
+    }
+
+    // Helper
+
+    private static LogEvent event(final String loggerName, final String pattern, final Object argument) {
+        return event(loggerName, pattern, argument, caller(1));
+    }
+
+    private static LogEvent event(final String loggerName, final String pattern, final Object argument,
+                                  final StackTraceElement caller) {
+        return new LogEvent(loggerName, LogLevel.INFO, pattern, new Object[]{argument}, null, caller,
+            Thread.currentThread(), System.currentTimeMillis(), null);
+    }
+
+    private static StackTraceElement caller(final int line) {
+        return new StackTraceElement("com.acme.Test", "test", "Test.java", line);
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2013 Philip Schiffer
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.psdev.slf4j.android.logger;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+import org.slf4j.Marker;
+
+import android.util.Log;
+
+public class CompositeLogSinkTest {
+
+    @Test
+    public void testEventsReachSinksAtOrAboveTheirLevel() throws Exception {
+        final RecordingSink all = new RecordingSink();
+        final RecordingSink warnings = new RecordingSink();
+        final RecordingSink off = new RecordingSink();
+        final CompositeLogSink sink = new CompositeLogSink(new LogSink[]{all, warnings, off},
+            new int[]{Log.VERBOSE, Log.WARN, LoggerLevelMap.OFF});
+        sink.write(event(LogLevel.DEBUG));
+        sink.write(event(LogLevel.WARN));
+        sink.write(event(LogLevel.ERROR));
+        assertEquals("should write all events", 3, all.getEvents().size());
+        assertEquals("should write warnings and errors", 2, warnings.getEvents().size());
+        assertEquals("should write nothing", 0, off.getEvents().size());
+    }
+
+    @Test
+    public void testFailingSinkDoesNotAffectOthers() throws Exception {
+        final RecordingSink recording = new RecordingSink();
+        final LogSink failing = new LogSink() {
+            @Override
+            public void write(final LogEvent event) {
+                throw new IllegalStateException("broken");
+            }
+
+            @Override
+            public void flush() {
+                throw new IllegalStateException("broken");
+            }
+        };
+        final CompositeLogSink sink = new CompositeLogSink(new LogSink[]{failing, recording},
+            new int[]{Log.VERBOSE, Log.VERBOSE});
+        sink.write(event(LogLevel.INFO));
+        sink.flush();
+        assertEquals("should still write the event", 1, recording.getEvents().size());
+        assertEquals("should still flush", 1, recording.getFlushes());
+    }
+
+    @Test
+    public void testEventsAreRoutedByMarker() throws Exception {
+        final RecordingSink all = new RecordingSink();
+        final RecordingSink audit = new RecordingSink();
+        final RecordingSink unmarked = new RecordingSink();
+        final CompositeLogSink sink = new CompositeLogSink(new LogSink[]{all, audit, unmarked},
+            new int[]{Log.VERBOSE, Log.VERBOSE, Log.VERBOSE},
+            new long[][]{null, AndroidMarker.bitsOf("AUDIT"), null},
+            new long[][]{null, null, AndroidMarker.bitsOf("AUDIT")});
+        final AndroidMarkerFactory factory = new AndroidMarkerFactory();
+        final Marker login = factory.getMarker("LOGIN");
+        login.add(factory.getMarker("AUDIT"));
+        sink.write(event(LogLevel.INFO, null));
+        sink.write(event(LogLevel.INFO, login));
+        sink.write(event(LogLevel.INFO, factory.getMarker("PERF")));
+        assertEquals("should write all events", 3, all.getEvents().size());
+        assertEquals("should write audit events", 1, audit.getEvents().size());
+        assertEquals("should write events without audit marker", 2, unmarked.getEvents().size());
+    }
+
+    // Helper
+
+    private static LogEvent event(final LogLevel level) {
+        return event(level, null);
+    }
+
+    private static LogEvent event(final LogLevel level, final Marker marker) {
+        return new LogEvent("com.acme.Test", level, marker, "message", null, null, null, Thread.currentThread(), 0L,
+            null);
+    }
+}
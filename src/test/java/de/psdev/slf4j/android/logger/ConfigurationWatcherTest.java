@@ -0,0 +1,66 @@
+/*
+ * Copyright 2013 Philip Schiffer
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package de.psdev.slf4j.android.logger;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ConfigurationWatcherTest {
+
+    private File mFile;
+
+    @Before
+    public void setUp() throws Exception {
+        mFile = File.createTempFile("logger", ".properties");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mFile.delete();
+    }
+
+    @Test
+    public void testNotifiesOnChange() throws Exception {
+        final AtomicInteger changes = new AtomicInteger();
+        final ConfigurationWatcher watcher = new ConfigurationWatcher(mFile, new Runnable() {
+            @Override
+            public void run() {
+                changes.incrementAndGet();
+            }
+        });
+        watcher.run();
+        assertEquals("should not notify without change", 0, changes.get());
+        final FileOutputStream outputStream = new FileOutputStream(mFile);
+        outputStream.write("key=value\n".getBytes("UTF-8"));
+        outputStream.close();
+        watcher.run();
+        assertEquals("should notify about change", 1, changes.get());
+        watcher.run();
+        assertEquals("should notify only once", 1, changes.get());
+        mFile.delete();
+        watcher.run();
+        assertEquals("should notify about deletion", 2, changes.get());
+    }
+}
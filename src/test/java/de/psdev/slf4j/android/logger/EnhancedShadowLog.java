@@ -57,6 +57,7 @@ public class EnhancedShadowLog {
 
     private static Map<String,List<LogItem>> logsByTag = new HashMap<String,List<LogItem>>();
     private static List<LogItem> logs = new ArrayList<LogItem>();
+    private static Map<String,Integer> tagToLevel = new HashMap<String,Integer>();
     public static PrintStream stream;
 
     @Implementation
@@ -155,6 +156,10 @@ public class EnhancedShadowLog {
 
     @Implementation
     public static boolean isLoggable(final String tag, final int level) {
+        final Integer loggableLevel = tagToLevel.get(tag);
+        if (loggableLevel != null) {
+            return level >= loggableLevel;
+        }
         return stream != null || level >= Log.VERBOSE;
     }
 
@@ -212,9 +217,21 @@ public class EnhancedShadowLog {
         return logsByTag.get(tag);
     }
 
+    /**
+     * Non-Android accessor.  Sets the lowest level {@link #isLoggable(String, int)} allows for a tag, like
+     * {@code adb shell setprop log.tag.<tag> <level>}.
+     *
+     * @param tag
+     * @param level
+     */
+    public static void setLoggable(final String tag, final int level) {
+        tagToLevel.put(tag, level);
+    }
+
     public static void reset() {
         logs.clear();
         logsByTag.clear();
+        tagToLevel.clear();
     }
 
     public static class LogItem {
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2013 Philip Schiffer
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package de.psdev.slf4j.android.logger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import android.util.Log;
+
+public class EventRecorderTest {
+
+    private static final PatternLayout LAYOUT = PatternLayout.compile("%msg");
+
+    @Test
+    public void testRecordsFromThreshold() throws Exception {
+        final EventRecorder recorder = new EventRecorder(64 * 1024, Log.DEBUG);
+        assertFalse("should not record trace", recorder.isRecorded(LogLevel.TRACE));
+        assertTrue("should record debug", recorder.isRecorded(LogLevel.DEBUG));
+        recorder.record("logger", LogLevel.TRACE, "trace", null, null, null, 0, null);
+        recorder.record("logger", LogLevel.DEBUG, "debug {}", 1, null, null, 1, null);
+        recorder.record("logger", LogLevel.WARN, "warn {} {} {}", null, null, new Object[]{1, 2, 3}, 3, null);
+        final String[] lines = dump(recorder);
+        assertEquals("should record from the threshold on", 2, lines.length);
+        assertTrue("should record the arguments", lines[0].endsWith(" DEBUG debug 1"));
+        assertTrue("should record the argument array", lines[1].endsWith(" WARN warn 1 2 3"));
+    }
+
+    @Test
+    public void testDumpMergesThreadsByTime() throws Exception {
+        final EventRecorder recorder = new EventRecorder(256 * 1024, Log.VERBOSE);
+        final int eventsPerThread = 200;
+        final Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            final int thread = i;
+            threads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < eventsPerThread; j++) {
+                        recorder.record("logger", LogLevel.INFO, "{}:{}", thread, j, null, 2, null);
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+        final String[] lines = dump(recorder);
+        assertEquals("should keep all events", threads.length * eventsPerThread, lines.length);
+        final int[] next = new int[threads.length];
+        for (int i = 0; i < lines.length; i++) {
+            if (i > 0) {
+                // the lines start with the date
+                assertTrue("should sort by time",
+                    lines[i - 1].substring(0, 23).compareTo(lines[i].substring(0, 23)) <= 0);
+            }
+            final String message = lines[i].substring(lines[i].lastIndexOf(' ') + 1);
+            final int separator = message.indexOf(':');
+            final int thread = Integer.parseInt(message.substring(0, separator));
+            assertEquals("should keep the order of each thread", next[thread]++,
+                Integer.parseInt(message.substring(separator + 1)));
+        }
+    }
+
+    @Test
+    public void testDictionaryIsBounded() throws Exception {
+        final EventRecorder recorder = new EventRecorder(EventRecorder.MIN_SIZE, Log.VERBOSE);
+        // patterns that are never repeated fill the dictionary several times
+        final int count = EventRecorder.MAX_DICTIONARY_BYTES / 10;
+        for (int i = 0; i < count; i++) {
+            recorder.record("logger", LogLevel.INFO, "message " + i + " {}", i, null, null, 1, null);
+        }
+        recorder.record("logger", LogLevel.INFO, "last", null, null, null, 0, null);
+        final String[] lines = dump(recorder);
+        assertTrue("should decode the newest events", lines[lines.length - 1].endsWith(" INFO last"));
+        assertTrue("should decode the older events", lines[lines.length - 2].contains(" message " + (count - 1)));
+    }
+
+    // Helper
+
+    private static String[] dump(final EventRecorder recorder) throws Exception {
+        final StringBuilder out = new StringBuilder();
+        recorder.dump(LAYOUT, LAYOUT, out);
+        return out.toString().split("\n");
+    }
+}
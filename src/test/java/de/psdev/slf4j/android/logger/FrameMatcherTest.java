@@ -0,0 +1,47 @@
+/*
+ * Copyright 2013 Philip Schiffer
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package de.psdev.slf4j.android.logger;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class FrameMatcherTest {
+
+    private final FrameMatcher mFrameMatcher = new FrameMatcher("com.acme.Sync");
+
+    @Test
+    public void testMatchesExactClassName() throws Exception {
+        assertTrue("should match class itself", mFrameMatcher.matches("com.acme.Sync"));
+    }
+
+    @Test
+    public void testMatchesInnerClasses() throws Exception {
+        assertTrue("should match inner class", mFrameMatcher.matches("com.acme.Sync$Worker"));
+        assertTrue("should match anonymous class", mFrameMatcher.matches("com.acme.Sync$1"));
+        assertTrue("should match nested inner class", mFrameMatcher.matches("com.acme.Sync$Worker$2"));
+    }
+
+    @Test
+    public void testDoesNotMatchOtherClasses() throws Exception {
+        assertFalse("should not match class with same prefix", mFrameMatcher.matches("com.acme.SyncAdapter"));
+        assertFalse("should not match sub package", mFrameMatcher.matches("com.acme.Sync.internal.Foo"));
+        assertFalse("should not match shorter name", mFrameMatcher.matches("com.acme.Syn"));
+        assertFalse("should not match dots as wildcards", mFrameMatcher.matches("comXacme.Sync"));
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2013 Philip Schiffer
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package de.psdev.slf4j.android.logger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+public class LogEventTest {
+
+    @Test
+    public void testThreadIsCapturedOnCreation() throws Exception {
+        final AtomicReference<LogEvent> event = new AtomicReference<LogEvent>();
+        final Thread thread = new Thread(new ThreadGroup("workers"), new Runnable() {
+            @Override
+            public void run() {
+                event.set(new LogEvent("logger", LogLevel.INFO, "message", null, null, Thread.currentThread(),
+                    0L, null));
+                Thread.currentThread().setName("renamed");
+            }
+        }, "worker");
+        thread.start();
+        thread.join();
+        assertEquals("should keep the name at creation", "worker", event.get().getThreadName());
+        assertEquals("should keep the id", thread.getId(), event.get().getThreadId());
+        assertEquals("should keep the group of the terminated thread", "workers", event.get().getThreadGroupName());
+    }
+
+    @Test
+    public void testWithMessage() throws Exception {
+        final StackTraceElement caller = new StackTraceElement("com.acme.Test", "test", "Test.java", 1);
+        final LogEvent event = new LogEvent("logger", LogLevel.WARN, "value {}", new Object[]{1}, new Exception(),
+            caller, Thread.currentThread(), 42L, null);
+        final LogEvent copy = event.withMessage("other");
+        assertEquals("should replace the message", "other", copy.getMessage());
+        assertEquals("should keep the level", LogLevel.WARN, copy.getLevel());
+        assertEquals("should keep the caller", caller, copy.getCaller());
+        assertEquals("should keep the thread", Thread.currentThread().getName(), copy.getThreadName());
+        assertEquals("should keep the timestamp", 42L, copy.getTimestamp());
+        assertNull("should drop the throwable", copy.getThrowable());
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2013 Philip Schiffer
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package de.psdev.slf4j.android.logger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class LogThrottleTest {
+
+    @Test
+    public void testSamplingKeepsEveryNthMessage() throws Exception {
+        final LogThrottle throttle = new LogThrottle(10, 0);
+        int kept = 0;
+        for (int i = 0; i < 100; i++) {
+            if (throttle.tryAcquire()) {
+                kept++;
+            }
+        }
+        assertEquals("should keep one in ten", 10, kept);
+        assertEquals("should count suppressed messages", 90L, throttle.drainSuppressed());
+        assertEquals("should reset count", 0L, throttle.drainSuppressed());
+    }
+
+    @Test
+    public void testRateLimitAllowsBurstOfOneSecond() throws Exception {
+        final LogThrottle throttle = new LogThrottle(1, 50);
+        int kept = 0;
+        for (int i = 0; i < 10000; i++) {
+            if (throttle.tryAcquire()) {
+                kept++;
+            }
+        }
+        assertTrue("should allow the burst, was " + kept, kept >= 50);
+        assertTrue("should limit the rate, was " + kept, kept < 100);
+        assertEquals("should count suppressed messages", 10000L - kept, throttle.drainSuppressed());
+    }
+
+    @Test
+    public void testNoLimit() throws Exception {
+        final LogThrottle throttle = new LogThrottle(0, 0);
+        for (int i = 0; i < 1000; i++) {
+            assertTrue("should keep every message", throttle.tryAcquire());
+        }
+    }
+}
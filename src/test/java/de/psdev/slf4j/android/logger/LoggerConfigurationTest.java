@@ -0,0 +1,60 @@
+/*
+ * Copyright 2013 Philip Schiffer
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package de.psdev.slf4j.android.logger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+import android.util.Log;
+
+import java.util.Collections;
+
+public class LoggerConfigurationTest {
+
+    @Test
+    public void testWithLogLevelKeepsOtherSettings() throws Exception {
+        final PatternLayout layout = PatternLayout.compile(PatternLayout.DEFAULT_PATTERN);
+        final LoggerConfiguration configuration = new LoggerConfiguration(LogLevel.INFO, "Tag",
+            new LoggerLevelMap(Log.INFO, Collections.singletonMap("com.acme.net", "WARN")),
+            new LoggerLevelMap(Log.VERBOSE, Collections.<String, String>emptyMap()), null, 64, layout, layout, 4000,
+            ArgumentSnapshot.IMMUTABLE, Log.VERBOSE);
+        final LoggerConfiguration changed = configuration.withLogLevel(LogLevel.DEBUG);
+        assertEquals("should not change the original", LogLevel.INFO, configuration.getLogLevel());
+        assertEquals("should have new level", LogLevel.DEBUG, changed.getLogLevel());
+        assertEquals("should keep tag", "Tag", changed.getLogTag());
+        assertSame("should keep layout", layout, changed.getLayout());
+        assertEquals("should use new default level", Log.DEBUG, changed.resolveLevelThreshold("com.acme.Main"));
+        assertEquals("should keep configured level", Log.WARN, changed.resolveLevelThreshold("com.acme.net.Http"));
+        assertEquals("should change tag", "Other", changed.withLogTag("Other").getLogTag());
+    }
+
+    @Test
+    public void testLoggableThresholdLimitsAllLoggers() throws Exception {
+        final PatternLayout layout = PatternLayout.compile(PatternLayout.DEFAULT_PATTERN);
+        final LoggerConfiguration configuration = new LoggerConfiguration(LogLevel.DEBUG, "Tag",
+            new LoggerLevelMap(Log.DEBUG, Collections.singletonMap("com.acme.net", "ERROR")),
+            new LoggerLevelMap(Log.VERBOSE, Collections.<String, String>emptyMap()), null, 64, layout, layout, 4000,
+            ArgumentSnapshot.IMMUTABLE, Log.WARN);
+        assertEquals("should be limited by isLoggable", Log.WARN, configuration.resolveLevelThreshold("com.acme.Main"));
+        assertEquals("should keep higher level", Log.ERROR, configuration.resolveLevelThreshold("com.acme.net.Http"));
+        assertEquals("should keep threshold on change", Log.WARN,
+            configuration.withLogLevel(LogLevel.TRACE).resolveLevelThreshold("com.acme.Main"));
+    }
+}
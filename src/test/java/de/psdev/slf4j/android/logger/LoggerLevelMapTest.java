@@ -0,0 +1,45 @@
+/*
+ * Copyright 2013 Philip Schiffer
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package de.psdev.slf4j.android.logger;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import android.util.Log;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public class LoggerLevelMapTest {
+
+    @Test
+    public void testResolvesLongestPrefix() throws Exception {
+        final Map<String, String> levels = new HashMap<String, String>();
+        levels.put("com.acme", "INFO");
+        levels.put("com.acme.net.*", "WARN");
+        levels.put("com.acme.net.Http", "off");
+        final LoggerLevelMap map = new LoggerLevelMap(Log.DEBUG, levels);
+        assertEquals("should use default", Log.DEBUG, map.resolve("org.example.Main"));
+        assertEquals("should use package level", Log.INFO, map.resolve("com.acme.Main"));
+        assertEquals("should use sub package level", Log.WARN, map.resolve("com.acme.net.Socket"));
+        assertEquals("should apply to inner classes", LoggerLevelMap.OFF, map.resolve("com.acme.net.Http$Call"));
+        assertEquals("should not match partial names", Log.INFO, map.resolve("com.acme.network.Socket"));
+        assertEquals("should use given default", Log.ERROR, map.resolve("org.example.Main", Log.ERROR));
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright 2013 Philip Schiffer
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package de.psdev.slf4j.android.logger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class MappedFileSinkTest {
+
+    @Rule
+    public final TemporaryFolder mFolder = new TemporaryFolder();
+
+    @Test
+    public void testTextRoundTrip() throws Exception {
+        final MappedFileSink sink = new MappedFileSink(properties("text", MappedFileSink.DEFAULT_SIZE));
+        sink.write(event(LogLevel.INFO, "value {}", 1, null));
+        sink.write(event(LogLevel.WARN, "value {}", 2, new Exception("test mapped exception")));
+        final List<String> lines = readLines("%msg");
+        assertTrue("should write the level", lines.get(0).contains(" INFO value 1"));
+        assertTrue("should write the second event", lines.get(1).contains(" WARN value 2"));
+        assertTrue("should write the stack trace", lines.get(2).contains("test mapped exception"));
+    }
+
+    @Test
+    public void testTextWrapAround() throws Exception {
+        final MappedFileSink sink = new MappedFileSink(properties("text", MappedFileSink.MIN_SIZE));
+        for (int i = 0; i < 100; i++) {
+            sink.write(event(LogLevel.INFO, "value {}", i, null));
+        }
+        assertNewest(messages("%msg"), 100);
+    }
+
+    @Test
+    public void testBinaryRoundTrip() throws Exception {
+        final MappedFileSink sink = new MappedFileSink(properties("binary", MappedFileSink.DEFAULT_SIZE));
+        sink.write(event(LogLevel.INFO, "value {}", 1, null));
+        sink.write(event(LogLevel.WARN, "value {}", 2, new Exception("test mapped exception")));
+        final List<String> lines = readLines("%msg");
+        assertTrue("should write the level", lines.get(0).endsWith(" INFO value 1"));
+        assertTrue("should write the second event", lines.get(1).endsWith(" WARN value 2"));
+        assertTrue("should write the stack trace", lines.get(2).contains("test mapped exception"));
+    }
+
+    @Test
+    public void testBinaryWrapAround() throws Exception {
+        final MappedFileSink sink = new MappedFileSink(properties("binary", MappedFileSink.MIN_SIZE));
+        for (int i = 0; i < 200; i++) {
+            sink.write(event(LogLevel.INFO, "value {}", i, null));
+        }
+        assertNewest(messages("%msg"), 200);
+    }
+
+    @Test
+    public void testBinaryReopenContinuesDictionary() throws Exception {
+        final Map<String, String> properties = properties("binary", MappedFileSink.DEFAULT_SIZE);
+        new MappedFileSink(properties).write(event(LogLevel.INFO, "first {}", 1, null));
+        final long dictionaryLength = dictionaryFile().length();
+        final MappedFileSink sink = new MappedFileSink(properties);
+        sink.write(event(LogLevel.INFO, "first {}", 2, null));
+        assertEquals("should reuse the strings of the previous run", dictionaryLength, dictionaryFile().length());
+        sink.write(event(LogLevel.INFO, "second {}", 3, null));
+        assertEquals("should keep the events of the previous run", "[first 1, first 2, second 3]",
+            messages("%msg").toString());
+        final List<String> dictionary = MappedFileSink.readDictionary(dictionaryFile());
+        assertEquals("should store every string once", new HashSet<String>(dictionary).size(), dictionary.size());
+    }
+
+    @Test
+    public void testBinaryReopenWithoutDictionaryStartsOver() throws Exception {
+        final Map<String, String> properties = properties("binary", MappedFileSink.DEFAULT_SIZE);
+        new MappedFileSink(properties).write(event(LogLevel.INFO, "first {}", 1, null));
+        assertTrue("should delete the dictionary", dictionaryFile().delete());
+        new MappedFileSink(properties).write(event(LogLevel.INFO, "second {}", 2, null));
+        assertEquals("should drop the events referencing the lost dictionary", "[second 2]",
+            messages("%msg").toString());
+    }
+
+    @Test
+    public void testBinaryDictionaryReset() throws Exception {
+        final MappedFileSink sink = new MappedFileSink(properties("binary", MappedFileSink.MIN_SIZE));
+        final int count = BinaryLogFormat.DEFAULT_MAX_DICTIONARY_SIZE + 1000;
+        for (int i = 0; i < count; i++) {
+            // every pattern is a new string
+            sink.write(event(LogLevel.INFO, "value " + i, null, null));
+        }
+        final List<String> dictionary = MappedFileSink.readDictionary(dictionaryFile());
+        assertTrue("should start a new dictionary", dictionary.size() < 1000);
+        assertTrue("should keep the newest strings", dictionary.contains("value " + (count - 1)));
+        assertNewest(messages("%msg"), count);
+    }
+
+    // Helper
+
+    private Map<String, String> properties(final String format, final int size) {
+        final Map<String, String> properties = new HashMap<String, String>();
+        properties.put(MappedFileSink.PATH_PROPERTY, ringFile().getPath());
+        properties.put(MappedFileSink.SIZE_PROPERTY, String.valueOf(size));
+        properties.put(MappedFileSink.FORMAT_PROPERTY, format);
+        return properties;
+    }
+
+    private File ringFile() {
+        return new File(mFolder.getRoot(), "app.ring");
+    }
+
+    private File dictionaryFile() {
+        return new File(ringFile().getPath() + MappedFileSink.DICTIONARY_SUFFIX);
+    }
+
+    private List<String> readLines(final String pattern) throws Exception {
+        final StringBuilder out = new StringBuilder();
+        MappedLogReader.read(ringFile(), pattern, out);
+        final List<String> lines = new ArrayList<String>();
+        for (final String line : out.toString().split("\n")) {
+            lines.add(line);
+        }
+        return lines;
+    }
+
+    /**
+     * @return the messages of the events without date, level and the thread appended by the text format
+     */
+    private List<String> messages(final String pattern) throws Exception {
+        final List<String> messages = new ArrayList<String>();
+        for (final String line : readLines(pattern)) {
+            final String message = line.split(" ", 4)[3];
+            final int thread = message.indexOf(" Thread[");
+            messages.add(thread >= 0 ? message.substring(0, thread) : message);
+        }
+        return messages;
+    }
+
+    /**
+     * Assert that the messages are the newest of {@code value 0} to {@code value <count - 1>}, in order.
+     */
+    private static void assertNewest(final List<String> messages, final int count) {
+        assertTrue("should drop the oldest events", messages.size() < count);
+        for (int i = 0; i < messages.size(); i++) {
+            assertEquals("should keep the newest events in order", "value " + (count - messages.size() + i),
+                messages.get(i));
+        }
+    }
+
+    private static LogEvent event(final LogLevel level, final String pattern, final Object argument,
+                                  final Throwable throwable) {
+        return new LogEvent("logger", level, pattern, argument != null ? new Object[]{argument} : null, throwable,
+            null, Thread.currentThread(), System.currentTimeMillis(), null);
+    }
+}
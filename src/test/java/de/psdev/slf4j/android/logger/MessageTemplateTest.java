@@ -0,0 +1,95 @@
+/*
+ * Copyright 2013 Philip Schiffer
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package de.psdev.slf4j.android.logger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+import org.slf4j.helpers.MessageFormatter;
+
+public class MessageTemplateTest {
+
+    private static final String[] PATTERNS = {
+        "",
+        "no placeholders",
+        "{}",
+        "value {}",
+        "{} and {}",
+        "{}{}{}",
+        "a {} b {} c {} d",
+        "escaped \\{} then {}",
+        "double escaped \\\\{} then {}",
+        "brace { and } not a placeholder {}",
+        "trailing {",
+        "\\{}"
+    };
+
+    @Test
+    public void testSingleArgumentMatchesMessageFormatter() throws Exception {
+        for (final String pattern : PATTERNS) {
+            assertEquals("should format like slf4j: " + pattern,
+                MessageFormatter.format(pattern, "x").getMessage(), MessageTemplate.format(pattern, "x"));
+        }
+    }
+
+    @Test
+    public void testTwoArgumentsMatchMessageFormatter() throws Exception {
+        for (final String pattern : PATTERNS) {
+            assertEquals("should format like slf4j: " + pattern,
+                MessageFormatter.format(pattern, 1, null).getMessage(), MessageTemplate.format(pattern, 1, null));
+        }
+    }
+
+    @Test
+    public void testArgumentArrayMatchesMessageFormatter() throws Exception {
+        final Object[] args = {"x", 2L, new int[]{1, 2}, new Object[]{"y"}};
+        for (final String pattern : PATTERNS) {
+            for (int count = 0; count <= args.length; count++) {
+                final Object[] used = new Object[count];
+                System.arraycopy(args, 0, used, 0, count);
+                assertEquals("should format like slf4j: " + pattern + " with " + count + " arguments",
+                    MessageFormatter.arrayFormat(pattern, used).getMessage(),
+                    MessageTemplate.format(pattern, args, count));
+            }
+        }
+    }
+
+    @Test
+    public void testFailingToString() throws Exception {
+        final Object failing = new Object() {
+            @Override
+            public String toString() {
+                throw new IllegalStateException();
+            }
+        };
+        assertEquals("should report failing toString", "value [FAILED toString()]",
+            MessageTemplate.format("value {}", failing));
+    }
+
+    @Test
+    public void testNullPattern() throws Exception {
+        assertNull("should keep null pattern", MessageTemplate.format(null, "x"));
+    }
+
+    @Test
+    public void testTemplatesAreCached() throws Exception {
+        final String pattern = "cached {}";
+        assertSame("should return cached template", MessageTemplate.get(pattern), MessageTemplate.get(pattern));
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2013 Philip Schiffer
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package de.psdev.slf4j.android.logger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Test;
+import org.slf4j.MDC;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+
+public class PatternLayoutTest {
+
+    private static final StackTraceElement CALLER = new StackTraceElement("com.acme.Sync", "run", "Sync.java", 42);
+
+    private final Thread mThread = new Thread(new ThreadGroup("group"), "worker");
+
+    @Test
+    public void testDefaultPattern() throws Exception {
+        final PatternLayout layout = PatternLayout.compile(PatternLayout.DEFAULT_PATTERN);
+        assertEquals("should render default line",
+            "message [Sync:run:42] Thread[worker," + mThread.getPriority() + ",group]",
+            layout.format(event(CALLER, 0L)));
+        assertTrue("default pattern should require caller", layout.requiresCaller());
+    }
+
+    @Test
+    public void testPatternWithoutCaller() throws Exception {
+        final PatternLayout layout = PatternLayout.compile("%threadName|%threadId: %m");
+        assertEquals("should render thread name and id", "worker|" + mThread.getId() + ": message",
+            layout.format(event(null, 0L)));
+        assertFalse("should not require caller", layout.requiresCaller());
+    }
+
+    @Test
+    public void testTimestampAndDate() throws Exception {
+        final PatternLayout layout = PatternLayout.compile("%timestamp %date");
+        final long timestamp = 1234567890123L;
+        final SimpleDateFormat dateFormat = new SimpleDateFormat("HH:mm:ss.SSS", Locale.ENGLISH);
+        assertEquals("should render timestamp and time of day",
+            timestamp + " " + dateFormat.format(new Date(timestamp)),
+            layout.format(event(null, timestamp)));
+    }
+
+    @Test
+    public void testMdc() throws Exception {
+        MDC.put("traceId", "abc");
+        final PatternLayout layout = PatternLayout.compile("%msg %X{traceId}%X{missing}");
+        final LogEvent event = event(null, 0L);
+        MDC.put("traceId", "changed");
+        assertEquals("should render MDC value at the time of logging", "message abc", layout.format(event));
+        assertTrue("should require MDC", layout.requiresMdc());
+    }
+
+    @Test
+    public void testAllMdcEntries() throws Exception {
+        final PatternLayout layout = PatternLayout.compile("%msg {%X}");
+        assertEquals("should render empty MDC", "message {}", layout.format(event(null, 0L)));
+        MDC.put("traceId", "abc");
+        MDC.put("user", "42");
+        final String line = layout.format(event(null, 0L));
+        assertTrue("should render all MDC entries, was " + line,
+            "message {traceId=abc, user=42}".equals(line) || "message {user=42, traceId=abc}".equals(line));
+    }
+
+    @Test
+    public void testLiteralsAndUnknownTokens() throws Exception {
+        final PatternLayout layout = PatternLayout.compile("100%% %unknown %L%");
+        assertEquals("should keep literals and unknown tokens", "100% %unknown 42%",
+            layout.format(event(CALLER, 0L)));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        MDC.clear();
+    }
+
+    // Helper
+
+    private LogEvent event(final StackTraceElement caller, final long timestamp) {
+        return new LogEvent("com.acme.Sync", LogLevel.INFO, "message", null, caller, mThread, timestamp,
+            MDC.getCopyOfContextMap());
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2013 Philip Schiffer
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package de.psdev.slf4j.android.logger;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * {@link LogSink} keeping the written events and the threads that wrote them, and counting the flushes.
+ */
+class RecordingSink implements LogSink {
+
+    private final List<LogEvent> mEvents = new ArrayList<LogEvent>();
+    private final List<Thread> mThreads = new ArrayList<Thread>();
+    private int mFlushes;
+
+    @Override
+    public synchronized void write(final LogEvent event) {
+        mEvents.add(event);
+        mThreads.add(Thread.currentThread());
+    }
+
+    @Override
+    public synchronized void flush() {
+        mFlushes++;
+    }
+
+    synchronized List<LogEvent> getEvents() {
+        return new ArrayList<LogEvent>(mEvents);
+    }
+
+    /**
+     * @return the formatted messages of the written events
+     */
+    synchronized List<String> getMessages() {
+        final List<String> messages = new ArrayList<String>(mEvents.size());
+        for (final LogEvent event : mEvents) {
+            messages.add(event.getMessage());
+        }
+        return messages;
+    }
+
+    synchronized List<Thread> getThreads() {
+        return new ArrayList<Thread>(mThreads);
+    }
+
+    synchronized int getFlushes() {
+        return mFlushes;
+    }
+}
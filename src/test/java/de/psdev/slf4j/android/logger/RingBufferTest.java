@@ -0,0 +1,104 @@
+/*
+ * Copyright 2013 Philip Schiffer
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.psdev.slf4j.android.logger;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.List;
+
+public class RingBufferTest {
+
+    private File mFile;
+
+    @Before
+    public void setUp() throws Exception {
+        mFile = File.createTempFile("ring", ".log");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mFile.delete();
+    }
+
+    @Test
+    public void testRecordsAreReadInOrder() throws Exception {
+        final RingBuffer ring = RingBuffer.open(mFile, 1024, 0);
+        for (int i = 0; i < 10; i++) {
+            ring.append(record(i, 10), 10);
+        }
+        final List<byte[]> records = ring.readRecords();
+        assertEquals("should read all records", 10, records.size());
+        for (int i = 0; i < 10; i++) {
+            assertArrayEquals("should read record " + i, record(i, 10), records.get(i));
+        }
+    }
+
+    @Test
+    public void testOldestRecordsAreOverwritten() throws Exception {
+        final RingBuffer ring = RingBuffer.open(mFile, 100, 0);
+        for (int i = 0; i < 50; i++) {
+            ring.append(record(i, 13), 13);
+        }
+        final List<byte[]> records = ring.readRecords();
+        // 17 bytes per record, 5 records fit into 100 bytes with the rest of each lap skipped
+        assertEquals("should keep the newest records", 5, records.size());
+        for (int i = 0; i < records.size(); i++) {
+            assertArrayEquals("should keep record " + (45 + i), record(45 + i, 13), records.get(i));
+        }
+    }
+
+    @Test
+    public void testRecordsSurviveReopening() throws Exception {
+        final RingBuffer ring = RingBuffer.open(mFile, 256, 0);
+        for (int i = 0; i < 30; i++) {
+            ring.append(record(i, 7), 7);
+        }
+        final List<byte[]> expected = ring.readRecords();
+        final List<byte[]> reread = RingBuffer.openForReading(mFile).readRecords();
+        assertEquals("should read the same number of records", expected.size(), reread.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertArrayEquals("should read the same record", expected.get(i), reread.get(i));
+        }
+        final RingBuffer reopened = RingBuffer.open(mFile, 256, 0);
+        reopened.append(record(30, 7), 7);
+        final List<byte[]> appended = reopened.readRecords();
+        assertArrayEquals("should append after the previous records", record(30, 7),
+            appended.get(appended.size() - 1));
+        assertArrayEquals("should keep the previous records", record(29, 7), appended.get(appended.size() - 2));
+    }
+
+    @Test
+    public void testChangedCapacityReinitializes() throws Exception {
+        RingBuffer.open(mFile, 256, 0).append(record(1, 7), 7);
+        assertEquals("should start empty", 0, RingBuffer.open(mFile, 512, 0).readRecords().size());
+    }
+
+    // Helper
+
+    private static byte[] record(final int value, final int length) {
+        final byte[] record = new byte[length];
+        for (int i = 0; i < length; i++) {
+            record[i] = (byte) (value + i);
+        }
+        return record;
+    }
+}
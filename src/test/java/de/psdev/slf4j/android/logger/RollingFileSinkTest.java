@@ -0,0 +1,203 @@
+/*
+ * Copyright 2013 Philip Schiffer
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package de.psdev.slf4j.android.logger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class RollingFileSinkTest {
+
+    @Rule
+    public final TemporaryFolder mFolder = new TemporaryFolder();
+
+    @Test
+    public void testRollBySize() throws Exception {
+        final Map<String, String> properties = properties();
+        properties.put(RollingFileSink.MAX_FILE_SIZE_PROPERTY, "100");
+        final RollingFileSink sink = new RollingFileSink(properties);
+        final long now = System.currentTimeMillis();
+        for (int i = 0; i < 10; i++) {
+            sink.write(event("message " + i, now + i));
+        }
+        sink.flush();
+        final File[] rolled = rolledFiles();
+        assertTrue("should roll before the file exceeds its size", rolled.length >= 4);
+        for (final File file : rolled) {
+            assertTrue("should keep rolled files within the size", file.length() <= 100);
+        }
+        assertTrue("should keep the active file within the size", activeFile().length() <= 100);
+        assertTrue("should keep the newest message in the active file",
+            readLines(activeFile()).get(readLines(activeFile()).size() - 1).contains("message 9"));
+    }
+
+    @Test
+    public void testRollByInterval() throws Exception {
+        final Map<String, String> properties = properties();
+        properties.put(RollingFileSink.ROLL_INTERVAL_PROPERTY, "1000");
+        final long now = System.currentTimeMillis();
+        final RollingFileSink sink = new RollingFileSink(properties);
+        sink.write(event("first", now));
+        sink.write(event("second", now + 10));
+        sink.write(event("third", now + 5000));
+        sink.flush();
+        final File[] rolled = rolledFiles();
+        assertEquals("should roll once", 1, rolled.length);
+        assertEquals("should keep the messages of the interval", 2, readLines(rolled[0]).size());
+        final List<String> lines = readLines(activeFile());
+        assertEquals("should start a new file", 1, lines.size());
+        assertTrue("should write the message of the new interval", lines.get(0).contains("third"));
+    }
+
+    @Test
+    public void testCompress() throws Exception {
+        final Map<String, String> properties = properties();
+        properties.put(RollingFileSink.ROLL_INTERVAL_PROPERTY, "1000");
+        properties.put(RollingFileSink.COMPRESS_PROPERTY, "true");
+        final long now = System.currentTimeMillis();
+        final RollingFileSink sink = new RollingFileSink(properties);
+        sink.write(event("first", now));
+        sink.write(event("second", now + 5000));
+        File[] rolled = rolledFiles();
+        final long deadline = System.currentTimeMillis() + 5000;
+        while (!rolled[0].getName().endsWith(RollingFileSink.COMPRESSED_SUFFIX)
+            && System.currentTimeMillis() < deadline) {
+            // compressed by the background thread
+            Thread.sleep(10);
+            rolled = rolledFiles();
+        }
+        assertEquals("should replace the rolled file", 1, rolled.length);
+        assertTrue("should compress the rolled file", rolled[0].getName().endsWith(RollingFileSink.COMPRESSED_SUFFIX));
+        final List<String> lines = readLines(new GZIPInputStream(new FileInputStream(rolled[0])));
+        assertEquals("should keep the content", 1, lines.size());
+        assertTrue("should keep the message", lines.get(0).contains("first"));
+    }
+
+    @Test
+    public void testBudgetDeletesOldestFiles() throws Exception {
+        final File oldest = createFile("app.log.20190101-000000-000", 100);
+        final File older = createFile("app.log.20200101-000000-000" + RollingFileSink.COMPRESSED_SUFFIX, 100);
+        // rolled in the same millisecond, after the compressed one
+        final File newer = createFile("app.log.20200101-000000-000-1", 100);
+        final File newest = createFile("app.log.20200101-000000-000-2", 100);
+        final Map<String, String> properties = properties();
+        properties.put(RollingFileSink.MAX_TOTAL_SIZE_PROPERTY, "250");
+        new RollingFileSink(properties);
+        final File[] rolled = awaitRolledFiles(2);
+        assertEquals("should delete files until the budget is met", Arrays.asList(newer, newest),
+            Arrays.asList(rolled));
+        assertFalse("should delete the oldest file", oldest.exists());
+        assertFalse("should delete the older file", older.exists());
+    }
+
+    // Helper
+
+    private Map<String, String> properties() {
+        final Map<String, String> properties = new HashMap<String, String>();
+        properties.put(RollingFileSink.PATH_PROPERTY, activeFile().getPath());
+        properties.put(RollingFileSink.COMPRESS_PROPERTY, "false");
+        return properties;
+    }
+
+    private File activeFile() {
+        return new File(mFolder.getRoot(), "app.log");
+    }
+
+    private File createFile(final String name, final int size) throws IOException {
+        final File file = new File(mFolder.getRoot(), name);
+        final FileOutputStream output = new FileOutputStream(file);
+        try {
+            output.write(new byte[size]);
+        } finally {
+            output.close();
+        }
+        return file;
+    }
+
+    /**
+     * @return the rolled files, sorted by name
+     */
+    private File[] rolledFiles() {
+        final File[] files = mFolder.getRoot().listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(final File dir, final String name) {
+                return name.startsWith("app.log.") && !name.endsWith(".tmp");
+            }
+        });
+        Arrays.sort(files);
+        return files;
+    }
+
+    /**
+     * Wait for the background thread until the given number of rolled files is left.
+     */
+    private File[] awaitRolledFiles(final int count) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + 5000;
+        File[] files = rolledFiles();
+        while (files.length != count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+            files = rolledFiles();
+        }
+        return files;
+    }
+
+    private static List<String> readLines(final File file) throws IOException {
+        return readLines(new FileInputStream(file));
+    }
+
+    private static List<String> readLines(final InputStream input) throws IOException {
+        final BufferedReader reader = new BufferedReader(new InputStreamReader(input, "UTF-8"));
+        try {
+            final List<String> lines = new ArrayList<String>();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line);
+            }
+            return lines;
+        } finally {
+            reader.close();
+        }
+    }
+
+    private static LogEvent event(final String message, final long timestamp) {
+        return new LogEvent("logger", LogLevel.INFO, message, null, null, Thread.currentThread(), timestamp, null);
+    }
+}
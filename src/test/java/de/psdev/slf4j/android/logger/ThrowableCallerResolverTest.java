@@ -0,0 +1,42 @@
+/*
+ * Copyright 2013 Philip Schiffer
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package de.psdev.slf4j.android.logger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+public class ThrowableCallerResolverTest {
+
+    private final FrameMatcher mFrameMatcher = new FrameMatcher(ThrowableCallerResolverTest.class.getName());
+
+    @Test
+    public void testFindCaller() throws Exception {
+        final StackTraceElement caller = new ThrowableCallerResolver().findCaller(mFrameMatcher, 64);
+        assertEquals("should find the calling method", "testFindCaller", caller.getMethodName());
+        assertEquals("should find the calling class", ThrowableCallerResolverTest.class.getName(),
+            caller.getClassName());
+    }
+
+    @Test
+    public void testMaxDepth() throws Exception {
+        assertNull("should stop after the maximum depth", new ThrowableCallerResolver().findCaller(mFrameMatcher, 1));
+        assertNull("should not find unknown classes",
+            new ThrowableCallerResolver().findCaller(new FrameMatcher("com.acme.Unknown"), 64));
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2013 Philip Schiffer
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package de.psdev.slf4j.android.logger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import android.util.Log;
+
+public class TriggerBufferTest {
+
+    @Test
+    public void testLevels() throws Exception {
+        final TriggerBuffer buffer = new TriggerBuffer(Log.ERROR, Log.INFO, 4, TriggerBuffer.Scope.THREAD);
+        assertTrue("should hold debug", buffer.isHeld(LogLevel.DEBUG));
+        assertFalse("should not hold info", buffer.isHeld(LogLevel.INFO));
+        assertFalse("should not trigger on warn", buffer.isTrigger(LogLevel.WARN));
+        assertTrue("should trigger on error", buffer.isTrigger(LogLevel.ERROR));
+    }
+
+    @Test
+    public void testReleaseKeepsNewestInOrder() throws Exception {
+        final TriggerBuffer buffer = new TriggerBuffer(Log.ERROR, Log.ERROR, 3, TriggerBuffer.Scope.GLOBAL);
+        for (int i = 0; i < 5; i++) {
+            buffer.hold(event("message " + i));
+        }
+        final LogEvent[] events = buffer.release();
+        assertEquals("should keep the newest events", 3, events.length);
+        for (int i = 0; i < 3; i++) {
+            assertEquals("should release in order", "message " + (i + 2), events[i].getMessage());
+        }
+        assertEquals("should be empty after release", 0, buffer.release().length);
+    }
+
+    @Test
+    public void testThreadScopeReleasesOwnEvents() throws Exception {
+        final TriggerBuffer buffer = new TriggerBuffer(Log.ERROR, Log.ERROR, 8, TriggerBuffer.Scope.THREAD);
+        buffer.hold(event("main"));
+        final Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                buffer.hold(event("other"));
+            }
+        });
+        thread.start();
+        thread.join();
+        final LogEvent[] events = buffer.release();
+        assertEquals("should only release events of the current thread", 1, events.length);
+        assertEquals("should release own event", "main", events[0].getMessage());
+    }
+
+    private static LogEvent event(final String message) {
+        return new LogEvent("logger", LogLevel.DEBUG, message, null, null, Thread.currentThread(), 0L, null);
+    }
+}